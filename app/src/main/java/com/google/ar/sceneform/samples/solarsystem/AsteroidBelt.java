@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.RenderableDefinition.Submesh;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Renders a {@link BeltField} with one merged mesh per band instead of one node per rock.
+ *
+ * <p>Each rock is a small tetrahedron baked into its band's mesh at its J2000 position. Advancing
+ * the belt only rotates the band nodes, so thousands of rocks cost a handful of draws and
+ * transform updates per frame. {@link OrbitDriver} calls {@link #update} once per frame.
+ */
+@SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+public class AsteroidBelt {
+  // Corners of a regular tetrahedron and its outward facing triangles.
+  private static final float[][] CORNERS = {{1, 1, 1}, {1, -1, -1}, {-1, 1, -1}, {-1, -1, 1}};
+  private static final int[] TRIANGLES = {0, 1, 2, 0, 3, 1, 0, 2, 3, 1, 3, 2};
+
+  private final BeltField field;
+  private final Node root = new Node();
+  private final Node[] bandNodes;
+  private final Quaternion scratchRotation = new Quaternion();
+  private final Vector3 scratchScale = new Vector3();
+
+  public AsteroidBelt(Context context, BeltField field, int argbColor) {
+    this.field = field;
+    bandNodes = new Node[field.getBandCount()];
+    for (int band = 0; band < bandNodes.length; band++) {
+      bandNodes[band] = new Node();
+      bandNodes[band].setParent(root);
+    }
+
+    MaterialFactory.makeOpaqueWithColor(context, new Color(argbColor))
+        .thenAccept(this::buildBandRenderables)
+        .exceptionally(
+            (throwable) -> {
+              DemoUtils.displayError(context, "Unable to create asteroid belt", throwable);
+              return null;
+            });
+  }
+
+  /** The node holding the whole belt. Attach it to the body the belt orbits. */
+  public Node getRoot() {
+    return root;
+  }
+
+  public int getRockCount() {
+    return field.getRockCount();
+  }
+
+  /** Moves every band to its position at a simulation time, in days since J2000. */
+  public void update(double daysSinceEpoch) {
+    field.update(daysSinceEpoch);
+    for (int band = 0; band < bandNodes.length; band++) {
+      float halfAngle = field.getBandAngle(band) * 0.5f;
+      scratchRotation.set(0.0f, (float) Math.sin(halfAngle), 0.0f, (float) Math.cos(halfAngle));
+      bandNodes[band].setLocalRotation(scratchRotation);
+    }
+  }
+
+  /** Spreads the belt along with the planet orbits. */
+  public void setDistanceScale(float distanceScale) {
+    scratchScale.set(distanceScale, distanceScale, distanceScale);
+    root.setLocalScale(scratchScale);
+  }
+
+  private void buildBandRenderables(Material material) {
+    for (int band = 0; band < bandNodes.length; band++) {
+      Node bandNode = bandNodes[band];
+      ModelRenderable.builder()
+          .setSource(buildBandDefinition(band, material))
+          .build()
+          .thenAccept(
+              (renderable) -> {
+                // Thousands of tiny rocks don't need to cast shadows or be hit tested.
+                renderable.setShadowCaster(false);
+                renderable.setCollisionShape(null);
+                bandNode.setRenderable(renderable);
+              });
+    }
+  }
+
+  private RenderableDefinition buildBandDefinition(int band, Material material) {
+    int start = field.getBandStart(band);
+    int end = field.getBandEnd(band);
+    List<Vertex> vertices = new ArrayList<>((end - start) * CORNERS.length);
+    List<Integer> triangleIndices = new ArrayList<>((end - start) * TRIANGLES.length);
+
+    for (int rock = start; rock < end; rock++) {
+      int firstVertex = vertices.size();
+      float size = field.getSize(rock);
+      for (float[] corner : CORNERS) {
+        vertices.add(
+            Vertex.builder()
+                .setPosition(
+                    new Vector3(
+                        field.getX(rock) + corner[0] * size,
+                        field.getY(rock) + corner[1] * size,
+                        field.getZ(rock) + corner[2] * size))
+                .setNormal(new Vector3(corner[0], corner[1], corner[2]).normalized())
+                .build());
+      }
+      for (int index : TRIANGLES) {
+        triangleIndices.add(firstVertex + index);
+      }
+    }
+
+    Submesh submesh =
+        Submesh.builder().setTriangleIndices(triangleIndices).setMaterial(material).build();
+    return RenderableDefinition.builder()
+        .setVertices(vertices)
+        .setSubmeshes(Collections.singletonList(submesh))
+        .build();
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Random;
+
+/**
+ * Positions and motion of the small bodies of a belt around the sun.
+ *
+ * <p>The belt is split into concentric bands by semi-major axis. Every rock in a band is assumed
+ * to move with the mean motion of the band's middle, so a whole band can be advanced with a single
+ * rotation. This keeps the inner bands overtaking the outer ones while only {@link #getBandCount()}
+ * angles have to be updated per frame, in one loop over primitive arrays.
+ *
+ * <p>Rock positions are stored at J2000 in displayed meters, grouped by band.
+ */
+public class BeltField {
+  // Kepler's third law for orbits around the sun: P = a^1.5 years.
+  private static final double DAYS_PER_YEAR = 365.25;
+  private static final double TWO_PI = 2.0 * Math.PI;
+
+  private final int rockCount;
+  private final int bandCount;
+
+  // xyz position and size of every rock, grouped by band.
+  private final float[] positions;
+  private final float[] sizes;
+
+  // Rocks of band b are in [bandStarts[b], bandStarts[b + 1]).
+  private final int[] bandStarts;
+  private final double[] bandMeanMotions;
+  private final float[] bandAngles;
+
+  private BeltField(int rockCount, int bandCount) {
+    this.rockCount = rockCount;
+    this.bandCount = bandCount;
+    this.positions = new float[rockCount * 3];
+    this.sizes = new float[rockCount];
+    this.bandStarts = new int[bandCount + 1];
+    this.bandMeanMotions = new double[bandCount];
+    this.bandAngles = new float[bandCount];
+  }
+
+  /**
+   * Generates a belt with randomly distributed rocks.
+   *
+   * @param seed seed of the random distribution, so the same belt is generated every time
+   * @param rockCount number of rocks
+   * @param bandCount number of bands that move independently
+   * @param innerAu smallest semi-major axis, in astronomical units
+   * @param outerAu largest semi-major axis, in astronomical units
+   * @param maxEccentricity largest eccentricity of a rock orbit
+   * @param maxInclinationDegrees largest inclination of a rock orbit to the ecliptic
+   * @param innerMeters displayed distance of {@code innerAu}
+   * @param outerMeters displayed distance of {@code outerAu}
+   * @param rockSize average rock size, in meters
+   */
+  public static BeltField generate(
+      long seed,
+      int rockCount,
+      int bandCount,
+      double innerAu,
+      double outerAu,
+      double maxEccentricity,
+      double maxInclinationDegrees,
+      float innerMeters,
+      float outerMeters,
+      float rockSize) {
+    if (rockCount < bandCount || bandCount < 1 || innerAu <= 0.0 || outerAu <= innerAu) {
+      throw new IllegalArgumentException("Invalid belt parameters");
+    }
+
+    BeltField field = new BeltField(rockCount, bandCount);
+    Random random = new Random(seed);
+    double bandWidthAu = (outerAu - innerAu) / bandCount;
+    float[] position = new float[3];
+
+    int rock = 0;
+    for (int band = 0; band < bandCount; band++) {
+      field.bandStarts[band] = rock;
+      double bandInnerAu = innerAu + band * bandWidthAu;
+      double bandMiddleAu = bandInnerAu + bandWidthAu * 0.5;
+      field.bandMeanMotions[band] = TWO_PI / (DAYS_PER_YEAR * Math.pow(bandMiddleAu, 1.5));
+
+      int bandEnd = (int) ((long) rockCount * (band + 1) / bandCount);
+      for (; rock < bandEnd; rock++) {
+        double a = bandInnerAu + random.nextDouble() * bandWidthAu;
+        OrbitalElements orbit =
+            new OrbitalElements(
+                a,
+                random.nextDouble() * maxEccentricity,
+                random.nextGaussian() * maxInclinationDegrees / 3.0,
+                random.nextDouble() * 360.0,
+                random.nextDouble() * 360.0,
+                random.nextDouble() * 360.0,
+                DAYS_PER_YEAR * Math.pow(a, 1.5));
+        KeplerOrbit.computePosition(orbit, 0.0, position, 0);
+
+        // Map the real semi-major axis onto the displayed distance range.
+        float meters =
+            (float) (innerMeters + (a - innerAu) / (outerAu - innerAu) * (outerMeters - innerMeters));
+        float metersPerAu = meters / (float) a;
+        field.positions[rock * 3] = position[0] * metersPerAu;
+        field.positions[rock * 3 + 1] = position[1] * metersPerAu;
+        field.positions[rock * 3 + 2] = position[2] * metersPerAu;
+        field.sizes[rock] = rockSize * (0.5f + random.nextFloat());
+      }
+    }
+    field.bandStarts[bandCount] = rockCount;
+    return field;
+  }
+
+  /** Sets the rotation angle of every band for a simulation time, in days since J2000. */
+  public void update(double daysSinceEpoch) {
+    for (int band = 0; band < bandCount; band++) {
+      bandAngles[band] = (float) ((bandMeanMotions[band] * daysSinceEpoch) % TWO_PI);
+    }
+  }
+
+  public int getRockCount() {
+    return rockCount;
+  }
+
+  public int getBandCount() {
+    return bandCount;
+  }
+
+  /** Index of the first rock of a band. The rocks of a band are contiguous. */
+  public int getBandStart(int band) {
+    return bandStarts[band];
+  }
+
+  /** Index after the last rock of a band. */
+  public int getBandEnd(int band) {
+    return bandStarts[band + 1];
+  }
+
+  /** Rotation of a band around the ecliptic pole since J2000, in radians. */
+  public float getBandAngle(int band) {
+    return bandAngles[band];
+  }
+
+  public float getX(int rock) {
+    return positions[rock * 3];
+  }
+
+  public float getY(int rock) {
+    return positions[rock * 3 + 1];
+  }
+
+  public float getZ(int rock) {
+    return positions[rock * 3 + 2];
+  }
+
+  public float getSize(int rock) {
+    return sizes[rock];
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Disables bodies that are outside the camera's view or too small to see.
+ *
+ * <p>Register a single instance with {@link Scene#addOnUpdateListener} after the {@link
+ * OrbitDriver}, so it tests the positions of the current frame. Each body is tested once per frame
+ * with a bounding sphere that also covers its moons. Disabling a body's node hides its visual, info
+ * card and moons and stops their updates, while OrbitDriver keeps moving the node so it reappears
+ * in the right place.
+ */
+public class BodyCuller implements Scene.OnUpdateListener {
+  // Bodies are culled below this apparent diameter and shown again above it times the hysteresis,
+  // so a body at the threshold doesn't flicker.
+  private static final float MIN_ANGULAR_DIAMETER_DEGREES = 0.1f;
+  private static final float SIZE_HYSTERESIS = 1.25f;
+
+  private final Camera camera;
+  private final Frustum frustum = new Frustum();
+
+  private final ArrayList<Node> nodes = new ArrayList<>();
+  private final ArrayList<Node> visuals = new ArrayList<>();
+  private int[] parents = new int[0];
+  private float[] modelRadii = new float[0];
+  private boolean[] culled = new boolean[0];
+
+  // Bounding spheres of the current frame as xyzr, each covering the body and its moons.
+  private float[] spheres = new float[0];
+  private int culledCount = 0;
+
+  public BodyCuller(Camera camera) {
+    this.camera = camera;
+  }
+
+  /**
+   * Adds a body to be culled. Parents must be added before their children.
+   *
+   * @param node the node that is disabled while the body is culled
+   * @param visual the node that renders the body
+   * @param modelRadius radius of the body's model before the visual's world scale is applied
+   * @param parent index returned for the parent body, or -1 if culling it doesn't affect this one
+   * @return the index of the body in the culler
+   */
+  public int addBody(Node node, Node visual, float modelRadius, int parent) {
+    int index = nodes.size();
+    if (parent >= index) {
+      throw new IllegalArgumentException("Parent " + parent + " must be added before " + index);
+    }
+    nodes.add(node);
+    visuals.add(visual);
+    parents = Arrays.copyOf(parents, index + 1);
+    parents[index] = parent;
+    modelRadii = Arrays.copyOf(modelRadii, index + 1);
+    modelRadii[index] = modelRadius;
+    culled = Arrays.copyOf(culled, index + 1);
+    spheres = Arrays.copyOf(spheres, (index + 1) * 4);
+    return index;
+  }
+
+  /** Returns how many bodies were culled in the last frame. */
+  public int getCulledCount() {
+    return culledCount;
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    int count = nodes.size();
+    if (count == 0) {
+      return;
+    }
+    long startNanos = FrameStats.start();
+
+    // Bounding spheres of the bodies themselves.
+    for (int i = 0; i < count; i++) {
+      float[] world = visuals.get(i).getWorldModelMatrix().data;
+      float worldScale =
+          (float) Math.sqrt(world[0] * world[0] + world[1] * world[1] + world[2] * world[2]);
+      int s = i * 4;
+      spheres[s] = world[12];
+      spheres[s + 1] = world[13];
+      spheres[s + 2] = world[14];
+      spheres[s + 3] = modelRadii[i] * worldScale;
+    }
+
+    // Grow each parent's sphere around its children. Children come after their parents, so
+    // walking backwards has every child finished before its parent.
+    for (int i = count - 1; i >= 0; i--) {
+      int parent = parents[i];
+      if (parent < 0) {
+        continue;
+      }
+      int s = i * 4;
+      int p = parent * 4;
+      float dx = spheres[s] - spheres[p];
+      float dy = spheres[s + 1] - spheres[p + 1];
+      float dz = spheres[s + 2] - spheres[p + 2];
+      float reach = (float) Math.sqrt(dx * dx + dy * dy + dz * dz) + spheres[s + 3];
+      spheres[p + 3] = Math.max(spheres[p + 3], reach);
+    }
+
+    frustum.set(camera.getViewMatrix().data, camera.getProjectionMatrix().data);
+    float[] cameraWorld = camera.getWorldModelMatrix().data;
+
+    culledCount = 0;
+    for (int i = 0; i < count; i++) {
+      int parent = parents[i];
+      if (parent >= 0 && culled[parent]) {
+        // Already hidden along with its parent; keep its own state until the parent returns.
+        culledCount++;
+        continue;
+      }
+
+      int s = i * 4;
+      float x = spheres[s];
+      float y = spheres[s + 1];
+      float z = spheres[s + 2];
+      float radius = spheres[s + 3];
+      float dx = x - cameraWorld[12];
+      float dy = y - cameraWorld[13];
+      float dz = z - cameraWorld[14];
+      float size =
+          LevelOfDetail.angularDiameterDegrees(radius, (float) Math.sqrt(dx * dx + dy * dy + dz * dz));
+      float minSize =
+          culled[i]
+              ? MIN_ANGULAR_DIAMETER_DEGREES * SIZE_HYSTERESIS
+              : MIN_ANGULAR_DIAMETER_DEGREES;
+
+      boolean cull = size < minSize || !frustum.intersectsSphere(x, y, z, radius);
+      if (cull != culled[i]) {
+        culled[i] = cull;
+        nodes.get(i).setEnabled(!cull);
+      }
+      if (cull) {
+        culledCount++;
+      }
+    }
+    FrameStats.stop(FrameStats.LISTENERS, startNanos);
+  }
+}
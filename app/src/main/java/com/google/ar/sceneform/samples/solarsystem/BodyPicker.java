@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.view.MotionEvent;
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Finds the body under a tap.
+ *
+ * <p>Register a single instance with {@link Scene#addOnUpdateListener} after the {@link
+ * OrbitDriver}. Every frame it refits a {@link SphereTree} over the bounding spheres of all bodies,
+ * so a tap is resolved with one ray query against the tree instead of Sceneform testing the
+ * collider of every node.
+ */
+public class BodyPicker implements Scene.OnUpdateListener {
+  /** Receives taps on a body. */
+  public interface OnBodyTapListener {
+    void onTap(MotionEvent motionEvent);
+  }
+
+  // Small bodies are hard to hit with a finger, so every body can be picked within at least this
+  // radius, in meters.
+  private static final float MIN_PICK_RADIUS = 0.02f;
+
+  private final ArrayList<Node> visuals = new ArrayList<>();
+  private final ArrayList<OnBodyTapListener> listeners = new ArrayList<>();
+  private float[] modelRadii = new float[0];
+  private final SphereTree tree = new SphereTree();
+
+  /**
+   * Makes a body pickable.
+   *
+   * @param visual the node that renders the body; its world transform places the bounding sphere
+   * @param modelRadius radius of the body's model before the visual's world scale is applied
+   * @param listener called when the body is tapped
+   */
+  public void addBody(Node visual, float modelRadius, OnBodyTapListener listener) {
+    int index = visuals.size();
+    visuals.add(visual);
+    listeners.add(listener);
+    modelRadii = Arrays.copyOf(modelRadii, index + 1);
+    modelRadii[index] = modelRadius;
+    tree.setItemCount(index + 1);
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    int count = visuals.size();
+    if (count == 0) {
+      return;
+    }
+    long startNanos = FrameStats.start();
+
+    for (int i = 0; i < count; i++) {
+      Node visual = visuals.get(i);
+      float[] world = visual.getWorldModelMatrix().data;
+      float radius = 0.0f;
+      if (visual.isActive()) {
+        float worldScale =
+            (float) Math.sqrt(world[0] * world[0] + world[1] * world[1] + world[2] * world[2]);
+        radius = Math.max(modelRadii[i] * worldScale, MIN_PICK_RADIUS);
+      }
+      tree.setItem(i, world[12], world[13], world[14], radius);
+    }
+    tree.refit();
+    FrameStats.stop(FrameStats.LISTENERS, startNanos);
+  }
+
+  /**
+   * Sends a tap to the nearest body under it.
+   *
+   * @return true if a body was tapped
+   */
+  public boolean onTap(Camera camera, MotionEvent motionEvent) {
+    Ray ray = camera.screenPointToRay(motionEvent.getX(), motionEvent.getY());
+    Vector3 origin = ray.getOrigin();
+    Vector3 direction = ray.getDirection();
+    int body =
+        tree.raycast(origin.x, origin.y, origin.z, direction.x, direction.y, direction.z);
+    if (body < 0) {
+      return false;
+    }
+    listeners.get(body).onTap(motionEvent);
+    return true;
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * The parts of a scene graph that {@link SimulationLoop} writes to.
+ *
+ * <p>Bodies are identified by the index {@link SimulationLoop#addBody} returned for them. The app
+ * implements this on top of Sceneform nodes; on a plain JVM it can simply record the values.
+ */
+public interface BodyScene {
+  /** Sets the position of a body relative to its parent, in meters. */
+  void applyPosition(int body, float x, float y, float z);
+
+  /** Sets the spin of a body as an xyzw quaternion. */
+  void applyRotation(int body, float x, float y, float z, float w);
+
+  /** Sets the uniform world scale of a body. */
+  void applyScale(int body, float scale);
+}
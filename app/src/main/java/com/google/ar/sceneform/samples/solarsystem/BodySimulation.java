@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Orbit positions and spin rotations of every body, kept in flat primitive arrays.
+ *
+ * <p>This is the per-frame math behind {@link OrbitDriver}, free of any scene graph so it can also
+ * run on a plain JVM. Positions are relative to each body's parent, in meters; rotations are xyzw
+ * quaternions about the y axis.
+ *
+ * <p>Every pose is a function of the time set with {@link #setTime}, read from a {@link
+ * SimulationClock}, so any time can be shown without stepping through the ones before it.
+ */
+public class BodySimulation {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int bodyCount = 0;
+  private OrbitalElements[] orbits = new OrbitalElements[INITIAL_CAPACITY];
+
+  // Tabulated positions, used instead of the orbit wherever the tables cover the simulation time.
+  // The table is null for bodies that only have an orbit.
+  private Ephemeris[] ephemerides = new Ephemeris[INITIAL_CAPACITY];
+  private int[] ephemerisBodies = new int[INITIAL_CAPACITY];
+
+  // Displayed distance of each body's semi-major axis, in meters.
+  private float[] orbitRadii = new float[INITIAL_CAPACITY];
+  private float[] spinDegreesPerSecond = new float[INITIAL_CAPACITY];
+
+  // Per-body transforms: xyz positions and xyzw rotations.
+  private float[] positions = new float[INITIAL_CAPACITY * 3];
+  private float[] rotations = new float[INITIAL_CAPACITY * 4];
+
+  // The time the poses are computed for, see SimulationClock.
+  private double simulationDays = 0.0;
+  private double spinSeconds = 0.0;
+
+  // Multiplies every orbit radius.
+  private float distanceScale = 1.0f;
+
+  /**
+   * Adds a body and places it on its orbit at the current time.
+   *
+   * @param orbit the body's orbit around its parent
+   * @param orbitRadius displayed distance of the semi-major axis, in meters
+   * @param degreesPerSecond spin of the body at a rotation speed multiplier of 1
+   * @return the index of the body
+   */
+  public int addBody(OrbitalElements orbit, float orbitRadius, float degreesPerSecond) {
+    ensureCapacity(bodyCount + 1);
+    int index = bodyCount++;
+    orbits[index] = orbit;
+    ephemerides[index] = null;
+    orbitRadii[index] = orbitRadius;
+    spinDegreesPerSecond[index] = degreesPerSecond;
+
+    computePositions(index, index + 1);
+    computeRotations(index, index + 1);
+    return index;
+  }
+
+  public int getBodyCount() {
+    return bodyCount;
+  }
+
+  /**
+   * Takes a body's positions from precomputed tables from now on, for the times they cover. Its
+   * orbit is still used outside of them and to scale the positions to the displayed distance.
+   *
+   * @param index the index of the body
+   * @param ephemeris the tables
+   * @param ephemerisBody the index of the body in the tables
+   */
+  public void useEphemeris(int index, Ephemeris ephemeris, int ephemerisBody) {
+    ephemerides[index] = ephemeris;
+    ephemerisBodies[index] = ephemerisBody;
+    computePositions(index, index + 1);
+  }
+
+  public double getSimulationDays() {
+    return simulationDays;
+  }
+
+  public double getSpinSeconds() {
+    return spinSeconds;
+  }
+
+  /**
+   * Computes the positions and rotations of every body at a time.
+   *
+   * @param simulationDays days since J2000, see {@link SimulationClock#getDays}
+   * @param spinSeconds see {@link SimulationClock#getSpinSeconds}
+   */
+  public void setTime(double simulationDays, double spinSeconds) {
+    this.simulationDays = simulationDays;
+    this.spinSeconds = spinSeconds;
+    computePositions(0, bodyCount);
+    computeRotations(0, bodyCount);
+  }
+
+  /**
+   * Places a body at a position relative to its parent, for example from a {@link
+   * GravitySimulation}. The position is scaled to the displayed distance like the body's orbit, and
+   * is kept until the next {@link #setTime}.
+   *
+   * @param index the index of the body
+   * @param positionsAu xyz positions in astronomical units
+   * @param offset index of the x component in {@code positionsAu}
+   */
+  public void placeBody(int index, float[] positionsAu, int offset) {
+    float metersPerAu = getMetersPerAu(index);
+    int p = index * 3;
+    positions[p] = positionsAu[offset] * metersPerAu;
+    positions[p + 1] = positionsAu[offset + 1] * metersPerAu;
+    positions[p + 2] = positionsAu[offset + 2] * metersPerAu;
+  }
+
+  public float getDistanceScale() {
+    return distanceScale;
+  }
+
+  /**
+   * Sets the multiplier applied to every orbit radius, used from the next {@link #setTime}.
+   *
+   * @return true if the scale changed
+   */
+  public boolean setDistanceScale(float distanceScale) {
+    if (this.distanceScale == distanceScale) {
+      return false;
+    }
+    this.distanceScale = distanceScale;
+    return true;
+  }
+
+  /** Live xyz positions of every body. Read only. */
+  float[] getPositions() {
+    return positions;
+  }
+
+  /** Live xyzw rotations of every body. Read only. */
+  float[] getRotations() {
+    return rotations;
+  }
+
+  /** Fills the positions of bodies in [start, end) at the current simulation time. */
+  void computePositions(int start, int end) {
+    for (int i = start; i < end; i++) {
+      OrbitalElements orbit = orbits[i];
+      int p = i * 3;
+      Ephemeris ephemeris = ephemerides[i];
+      if (ephemeris == null
+          || !ephemeris.computePosition(ephemerisBodies[i], simulationDays, positions, p)) {
+        KeplerOrbit.computePosition(orbit, simulationDays, positions, p);
+      }
+
+      float metersPerAu = getMetersPerAu(i);
+      positions[p] *= metersPerAu;
+      positions[p + 1] *= metersPerAu;
+      positions[p + 2] *= metersPerAu;
+    }
+  }
+
+  /** Scale of a body's real orbit that makes its semi-major axis match the displayed distance. */
+  private float getMetersPerAu(int index) {
+    return orbitRadii[index] * distanceScale / (float) orbits[index].getSemiMajorAxisAu();
+  }
+
+  /** Fills the rotations of bodies in [start, end) at the current spin time. */
+  void computeRotations(int start, int end) {
+    for (int i = start; i < end; i++) {
+      double angle = (spinDegreesPerSecond[i] * spinSeconds) % 360.0;
+      double halfAngle = Math.toRadians(angle) * 0.5;
+      int r = i * 4;
+      rotations[r] = 0.0f;
+      rotations[r + 1] = (float) Math.sin(halfAngle);
+      rotations[r + 2] = 0.0f;
+      rotations[r + 3] = (float) Math.cos(halfAngle);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= orbits.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, orbits.length * 2);
+    orbits = Arrays.copyOf(orbits, newCapacity);
+    ephemerides = Arrays.copyOf(ephemerides, newCapacity);
+    ephemerisBodies = Arrays.copyOf(ephemerisBodies, newCapacity);
+    orbitRadii = Arrays.copyOf(orbitRadii, newCapacity);
+    spinDegreesPerSecond = Arrays.copyOf(spinDegreesPerSecond, newCapacity);
+    positions = Arrays.copyOf(positions, newCapacity * 3);
+    rotations = Arrays.copyOf(rotations, newCapacity * 4);
+  }
+}
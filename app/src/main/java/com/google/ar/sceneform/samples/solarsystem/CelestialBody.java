@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/** One entry of a {@link CelestialCatalog}. */
+public class CelestialBody {
+  private final String name;
+  private final int parentIndex;
+  private final OrbitalElements orbit;
+  private final double mass;
+  private final float displayDistanceAu;
+  private final float scale;
+  private final String model;
+  private final String info;
+
+  public CelestialBody(
+      String name,
+      int parentIndex,
+      OrbitalElements orbit,
+      double mass,
+      float displayDistanceAu,
+      float scale,
+      String model,
+      String info) {
+    this.name = name;
+    this.parentIndex = parentIndex;
+    this.orbit = orbit;
+    this.mass = mass;
+    this.displayDistanceAu = displayDistanceAu;
+    this.scale = scale;
+    this.model = model;
+    this.info = info;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Index of the parent body in the catalog, or -1 for the root of the hierarchy. */
+  public int getParentIndex() {
+    return parentIndex;
+  }
+
+  /** Orbit around the parent body, null for the root of the hierarchy. */
+  public OrbitalElements getOrbit() {
+    return orbit;
+  }
+
+  /** Mass of the body, in solar masses. */
+  public double getMass() {
+    return mass;
+  }
+
+  /** Displayed distance from the parent body, in compressed astronomical units. */
+  public float getDisplayDistanceAu() {
+    return displayDistanceAu;
+  }
+
+  public float getScale() {
+    return scale;
+  }
+
+  /** Asset name of the body's model, for example "Earth.sfb". */
+  public String getModel() {
+    return model;
+  }
+
+  public String getInfo() {
+    return info;
+  }
+}
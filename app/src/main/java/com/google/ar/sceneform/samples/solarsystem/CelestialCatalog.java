@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The bodies of the solar system, read from a compact text catalog.
+ *
+ * <p>Each non-empty line that doesn't start with '#' describes one body with '|' separated fields:
+ *
+ * <pre>
+ * name|parent|a (AU)|e|i|node|periapsis|mean anomaly|period (days)|mass|display AU|scale|model|info
+ * </pre>
+ *
+ * Angles are J2000 values in degrees and masses are in solar masses. The first body is the root of
+ * the hierarchy and uses "-" as its parent, orbit and display distance fields. Every other body
+ * must name a parent that appears earlier in the file, so the hierarchy can be built in a single
+ * pass.
+ */
+public class CelestialCatalog {
+  private static final int FIELD_COUNT = 14;
+  private static final String NO_VALUE = "-";
+
+  private final List<CelestialBody> bodies;
+
+  private CelestialCatalog(List<CelestialBody> bodies) {
+    this.bodies = bodies;
+  }
+
+  /** Maps {@code length} bytes of {@code channel} starting at {@code offset} and parses them. */
+  public static CelestialCatalog read(FileChannel channel, long offset, long length)
+      throws IOException {
+    return parse(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+  }
+
+  /** Reads {@code channel} to the end through a single buffer and parses it. */
+  public static CelestialCatalog read(ReadableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+    while (channel.read(buffer) >= 0) {
+      if (!buffer.hasRemaining()) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+      }
+    }
+    buffer.flip();
+    return parse(buffer);
+  }
+
+  /** Parses a UTF-8 encoded catalog. */
+  public static CelestialCatalog parse(ByteBuffer buffer) {
+    CharBuffer text = StandardCharsets.UTF_8.decode(buffer);
+    List<CelestialBody> bodies = new ArrayList<>();
+    Map<String, Integer> indices = new HashMap<>();
+
+    int lineNumber = 0;
+    int lineStart = 0;
+    int length = text.length();
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && text.charAt(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      lineNumber++;
+      String line = text.subSequence(lineStart, lineEnd).toString().trim();
+      lineStart = lineEnd + 1;
+
+      if (line.isEmpty() || line.charAt(0) == '#') {
+        continue;
+      }
+      CelestialBody body = parseBody(line, lineNumber, bodies.isEmpty(), indices);
+      if (indices.put(body.getName(), bodies.size()) != null) {
+        throw new IllegalArgumentException(
+            "Line " + lineNumber + ": duplicate body " + body.getName());
+      }
+      bodies.add(body);
+    }
+
+    if (bodies.isEmpty()) {
+      throw new IllegalArgumentException("Catalog has no bodies");
+    }
+    return new CelestialCatalog(bodies);
+  }
+
+  private static CelestialBody parseBody(
+      String line, int lineNumber, boolean isRoot, Map<String, Integer> indices) {
+    String[] fields = line.split("\\|", -1);
+    if (fields.length != FIELD_COUNT) {
+      throw new IllegalArgumentException(
+          "Line " + lineNumber + ": expected " + FIELD_COUNT + " fields, got " + fields.length);
+    }
+
+    String name = fields[0].trim();
+    String parent = fields[1].trim();
+    try {
+      int parentIndex;
+      OrbitalElements orbit;
+      if (isRoot) {
+        if (!NO_VALUE.equals(parent)) {
+          throw new IllegalArgumentException("the first body can't have a parent");
+        }
+        parentIndex = -1;
+        orbit = null;
+      } else {
+        Integer index = indices.get(parent);
+        if (index == null) {
+          throw new IllegalArgumentException("parent " + parent + " must be listed before " + name);
+        }
+        parentIndex = index;
+        orbit =
+            new OrbitalElements(
+                Double.parseDouble(fields[2].trim()),
+                Double.parseDouble(fields[3].trim()),
+                Double.parseDouble(fields[4].trim()),
+                Double.parseDouble(fields[5].trim()),
+                Double.parseDouble(fields[6].trim()),
+                Double.parseDouble(fields[7].trim()),
+                Double.parseDouble(fields[8].trim()));
+      }
+
+      double mass = Double.parseDouble(fields[9].trim());
+      float displayDistanceAu = isRoot ? 0.0f : Float.parseFloat(fields[10].trim());
+      float scale = Float.parseFloat(fields[11].trim());
+      return new CelestialBody(
+          name,
+          parentIndex,
+          orbit,
+          mass,
+          displayDistanceAu,
+          scale,
+          fields[12].trim(),
+          fields[13].trim());
+    } catch (IllegalArgumentException e) {
+      // NumberFormatException is an IllegalArgumentException as well.
+      throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+    }
+  }
+
+  public int size() {
+    return bodies.size();
+  }
+
+  public CelestialBody get(int index) {
+    return bodies.get(index);
+  }
+
+  /**
+   * Returns the distinct model names ordered by how far their body is displayed from the root, so
+   * inner bodies come first. Moons are placed at their parent's distance plus their own.
+   */
+  public List<String> getModelsByDistance() {
+    int count = bodies.size();
+    float[] distances = new float[count];
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      CelestialBody body = bodies.get(i);
+      int parentIndex = body.getParentIndex();
+      distances[i] = parentIndex < 0 ? 0.0f : distances[parentIndex] + body.getDisplayDistanceAu();
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Float.compare(distances[a], distances[b]));
+
+    Set<String> models = new LinkedHashSet<>();
+    for (int i = 0; i < count; i++) {
+      models.add(bodies.get(order[i]).getModel());
+    }
+    return new ArrayList<>(models);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * A value that follows a target exponentially, used to smooth out slider input.
+ *
+ * <p>Setting the target is cheap and can happen any number of times per frame; the value only
+ * moves in {@link #step}, which is called once per frame.
+ */
+public class EasedValue {
+  // Snap to the target once the remaining difference is below this fraction of it.
+  private static final float SNAP_FRACTION = 1e-3f;
+
+  private final float ratePerSecond;
+  private float value;
+  private float target;
+
+  /**
+   * @param initialValue the value and target to start with
+   * @param ratePerSecond how quickly the value follows; after 1 / rate seconds about two thirds of
+   *     the distance to the target is covered
+   */
+  public EasedValue(float initialValue, float ratePerSecond) {
+    this.ratePerSecond = ratePerSecond;
+    this.value = initialValue;
+    this.target = initialValue;
+  }
+
+  public void setTarget(float target) {
+    this.target = target;
+  }
+
+  public float getTarget() {
+    return target;
+  }
+
+  public float get() {
+    return value;
+  }
+
+  /**
+   * Moves the value towards the target.
+   *
+   * @return true if the value changed
+   */
+  public boolean step(float deltaSeconds) {
+    if (value == target) {
+      return false;
+    }
+    float remaining = target - value;
+    value += remaining * (1.0f - (float) Math.exp(-ratePerSecond * deltaSeconds));
+    if (Math.abs(target - value) <= SNAP_FRACTION * Math.max(1.0f, Math.abs(target))) {
+      value = target;
+    }
+    return true;
+  }
+}
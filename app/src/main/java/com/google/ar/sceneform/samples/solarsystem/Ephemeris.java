@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Precomputed body positions, stored as Chebyshev polynomials over fixed time spans.
+ *
+ * <p>The tables are generated at build time by the {@code :ephemeris} module from a planetary
+ * theory that is far too slow to evaluate every frame. At runtime they are memory-mapped and only
+ * the small directory is read up front, so they cost no parsing and next to no heap. Evaluating a
+ * position takes one Clenshaw recurrence per axis over the coefficients of a single span.
+ *
+ * <p>The format is little-endian throughout:
+ *
+ * <pre>
+ * header:    int magic, int version, int body count, int reserved
+ * per body:  16 byte UTF-8 name (zero padded), double start (days since J2000),
+ *            double span length (days), int span count, int coefficients per axis,
+ *            int byte offset of the coefficients, int reserved
+ * data:      per span, the x, y and z coefficients as floats, T0 first
+ * </pre>
+ *
+ * Positions are relative to the body's parent in the catalog, in astronomical units and in
+ * Sceneform's axis convention, like those of {@link KeplerOrbit}.
+ */
+public final class Ephemeris {
+  static final int MAGIC = 0x31485045; // "EPH1"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  static final int ENTRY_BYTES = 48;
+  static final int NAME_BYTES = 16;
+
+  private final FloatBuffer coefficients;
+  private final String[] names;
+  private final double[] startDays;
+  private final double[] spanDays;
+  private final int[] spanCounts;
+  private final int[] coefficientCounts;
+  // Index of each body's first coefficient in coefficients.
+  private final int[] firstCoefficients;
+
+  private Ephemeris(ByteBuffer buffer, int bodyCount) {
+    names = new String[bodyCount];
+    startDays = new double[bodyCount];
+    spanDays = new double[bodyCount];
+    spanCounts = new int[bodyCount];
+    coefficientCounts = new int[bodyCount];
+    firstCoefficients = new int[bodyCount];
+
+    byte[] name = new byte[NAME_BYTES];
+    long floatCount = buffer.limit() / 4;
+    for (int i = 0; i < bodyCount; i++) {
+      int entry = HEADER_BYTES + i * ENTRY_BYTES;
+      buffer.position(entry);
+      buffer.get(name);
+      int nameLength = 0;
+      while (nameLength < NAME_BYTES && name[nameLength] != 0) {
+        nameLength++;
+      }
+      names[i] = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+      startDays[i] = buffer.getDouble(entry + 16);
+      spanDays[i] = buffer.getDouble(entry + 24);
+      spanCounts[i] = buffer.getInt(entry + 32);
+      coefficientCounts[i] = buffer.getInt(entry + 36);
+      int offset = buffer.getInt(entry + 40);
+
+      long floats = 3L * spanCounts[i] * coefficientCounts[i];
+      if (!(spanDays[i] > 0.0)
+          || spanCounts[i] <= 0
+          || coefficientCounts[i] <= 0
+          || offset % 4 != 0
+          || offset < HEADER_BYTES + bodyCount * ENTRY_BYTES
+          || offset / 4 + floats > floatCount) {
+        throw new IllegalArgumentException(
+            "Ephemeris entry " + i + " (" + names[i] + ") is invalid");
+      }
+      firstCoefficients[i] = offset / 4;
+    }
+    buffer.position(0);
+    coefficients = buffer.asFloatBuffer();
+  }
+
+  /** Maps {@code length} bytes of {@code channel} starting at {@code offset} and reads them. */
+  public static Ephemeris read(FileChannel channel, long offset, long length) throws IOException {
+    return parse(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+  }
+
+  /** Reads the directory of the tables in {@code buffer}, which are used from there on. */
+  public static Ephemeris parse(ByteBuffer buffer) {
+    ByteBuffer tables = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    if (tables.limit() < HEADER_BYTES || tables.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Not an ephemeris");
+    }
+    if (tables.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Unsupported ephemeris version " + tables.getInt(4));
+    }
+    int bodyCount = tables.getInt(8);
+    if (bodyCount < 0 || HEADER_BYTES + (long) bodyCount * ENTRY_BYTES > tables.limit()) {
+      throw new IllegalArgumentException("Ephemeris directory is truncated");
+    }
+    return new Ephemeris(tables, bodyCount);
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  public String getName(int body) {
+    return names[body];
+  }
+
+  /** Returns the index of the body with the given name, or -1 if it isn't tabulated. */
+  public int indexOf(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** First day covered for a body, in days since J2000. */
+  public double getStartDays(int body) {
+    return startDays[body];
+  }
+
+  /** End of the days covered for a body, in days since J2000. */
+  public double getEndDays(int body) {
+    return startDays[body] + spanDays[body] * spanCounts[body];
+  }
+
+  /**
+   * Writes the position of a body relative to its parent into {@code out[offset..offset + 2]}.
+   *
+   * @param body the index of the body in the tables
+   * @param daysSinceEpoch simulation time in days since J2000
+   * @param out destination for the x, y and z components, in astronomical units
+   * @param offset index of the x component in {@code out}
+   * @return false, leaving {@code out} untouched, if the tables don't cover the time
+   */
+  public boolean computePosition(int body, double daysSinceEpoch, float[] out, int offset) {
+    double spans = (daysSinceEpoch - startDays[body]) / spanDays[body];
+    int span = (int) Math.floor(spans);
+    if (spans < 0.0 || span > spanCounts[body]) {
+      return false;
+    }
+    // The very end of the range belongs to the last span.
+    if (span == spanCounts[body]) {
+      span--;
+    }
+
+    // Time within the span, scaled to [-1, 1].
+    double t = 2.0 * (spans - span) - 1.0;
+    double twoT = 2.0 * t;
+    int n = coefficientCounts[body];
+    int x = firstCoefficients[body] + span * 3 * n;
+    int y = x + n;
+    int z = y + n;
+
+    // Clenshaw's recurrence for the three axes at once.
+    double bx1 = 0.0;
+    double bx2 = 0.0;
+    double by1 = 0.0;
+    double by2 = 0.0;
+    double bz1 = 0.0;
+    double bz2 = 0.0;
+    for (int k = n - 1; k >= 1; k--) {
+      double bx = twoT * bx1 - bx2 + coefficients.get(x + k);
+      double by = twoT * by1 - by2 + coefficients.get(y + k);
+      double bz = twoT * bz1 - bz2 + coefficients.get(z + k);
+      bx2 = bx1;
+      bx1 = bx;
+      by2 = by1;
+      by1 = by;
+      bz2 = bz1;
+      bz1 = bz;
+    }
+    out[offset] = (float) (t * bx1 - bx2 + coefficients.get(x));
+    out[offset + 1] = (float) (t * by1 - by2 + coefficients.get(y));
+    out[offset + 2] = (float) (t * bz1 - bz2 + coefficients.get(z));
+    return true;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A captured frame: tightly packed RGBA pixels plus their size and capture time.
+ *
+ * <p>Buffers are owned by a {@link RecordingPipeline} and reused. The pixel storage is allocated
+ * once for the largest frame the pipeline records; downscaled frames use only part of it.
+ */
+public class FrameBuffer {
+  public static final int BYTES_PER_PIXEL = 4;
+
+  private final ByteBuffer pixels;
+  private int width;
+  private int height;
+  private long timestampNanos;
+
+  FrameBuffer(int maxWidth, int maxHeight) {
+    pixels = ByteBuffer.allocateDirect(maxWidth * maxHeight * BYTES_PER_PIXEL);
+  }
+
+  /**
+   * Prepares the buffer for a frame of the given size and returns the pixel storage, cleared and
+   * limited to that size, ready to be filled.
+   */
+  public ByteBuffer prepare(int width, int height, long timestampNanos) {
+    this.width = width;
+    this.height = height;
+    this.timestampNanos = timestampNanos;
+    pixels.clear();
+    pixels.limit(width * height * BYTES_PER_PIXEL);
+    return pixels;
+  }
+
+  /** Returns the pixels of the frame, positioned at the first one. */
+  public ByteBuffer getPixels() {
+    pixels.position(0);
+    pixels.limit(width * height * BYTES_PER_PIXEL);
+    return pixels;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public long getTimestampNanos() {
+    return timestampNanos;
+  }
+}
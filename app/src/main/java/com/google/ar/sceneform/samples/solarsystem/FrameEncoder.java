@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+
+/**
+ * Turns captured frames into a recording. All methods are called on the recording pipeline's
+ * encoder thread, never on the UI or render thread.
+ */
+public interface FrameEncoder {
+  /**
+   * Called once before the first frame.
+   *
+   * @param width the width of the recording; frames may be smaller when they were downscaled
+   * @param height the height of the recording
+   */
+  void start(int width, int height) throws IOException;
+
+  /** Encodes a frame. The buffer is reused once this returns. */
+  void encode(FrameBuffer frame) throws IOException;
+
+  /** Called once after the last frame, also if encoding failed. */
+  void stop() throws IOException;
+}
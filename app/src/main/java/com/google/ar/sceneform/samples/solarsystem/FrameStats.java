@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Frame time and per-subsystem timings, recorded into {@link LatencyHistogram}s.
+ *
+ * <p>Subsystems wrap their work in {@link #start} and {@link #stop}. Their time is summed over the
+ * frame and recorded once per frame by {@link #endFrame}, so a subsystem that runs for every planet
+ * shows up as a single per-frame cost. {@link #ASSET_LOADS} is recorded per load instead. Recording
+ * never allocates. Only use this class from the UI thread.
+ */
+public final class FrameStats {
+  /** Time between frames. */
+  public static final int FRAME = 0;
+  /** OrbitDriver moving and spinning the bodies. */
+  public static final int ORBITS = 1;
+  /** Planet.onUpdate of every planet. */
+  public static final int PLANETS = 2;
+  /** Scene update listeners other than OrbitDriver. */
+  public static final int LISTENERS = 3;
+  /** Loading a single model, not counting the time it was queued. */
+  public static final int ASSET_LOADS = 4;
+
+  private static final int SECTION_COUNT = 5;
+  private static final String[] SECTION_NAMES = {
+    "frame", "orbits", "planets", "listeners", "asset_loads"
+  };
+
+  private static final LatencyHistogram[] histograms = new LatencyHistogram[SECTION_COUNT];
+  private static final long[] frameNanos = new long[SECTION_COUNT];
+  private static int enabledNodeCount = 0;
+  private static int renderableCount = 0;
+
+  static {
+    for (int i = 0; i < SECTION_COUNT; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+  }
+
+  private FrameStats() {}
+
+  /** Returns a start time to pass to {@link #stop}. */
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  /** Adds the time since {@code startNanos} to a section's total for this frame. */
+  public static void stop(int section, long startNanos) {
+    frameNanos[section] += System.nanoTime() - startNanos;
+  }
+
+  /** Records a single duration that isn't tied to a frame. */
+  public static void record(int section, long nanos) {
+    histograms[section].record(nanos);
+  }
+
+  /**
+   * Records the frame interval and the per-frame totals of every section, then starts a new frame.
+   */
+  public static void endFrame(long frameIntervalNanos) {
+    histograms[FRAME].record(frameIntervalNanos);
+    for (int section = FRAME + 1; section < SECTION_COUNT; section++) {
+      if (section == ASSET_LOADS) {
+        continue;
+      }
+      histograms[section].record(frameNanos[section]);
+      frameNanos[section] = 0;
+    }
+  }
+
+  public static void setSceneCounts(int enabledNodes, int renderables) {
+    enabledNodeCount = enabledNodes;
+    renderableCount = renderables;
+  }
+
+  public static LatencyHistogram getHistogram(int section) {
+    return histograms[section];
+  }
+
+  public static void reset() {
+    for (int i = 0; i < SECTION_COUNT; i++) {
+      histograms[i].reset();
+      frameNanos[i] = 0;
+    }
+  }
+
+  /** Appends p50, p95 and p99 of every section in milliseconds, plus the scene counts. */
+  public static void appendSummary(StringBuilder out) {
+    out.append(String.format(Locale.US, "%-11s %6s %6s %6s%n", "ms", "p50", "p95", "p99"));
+    for (int section = 0; section < SECTION_COUNT; section++) {
+      LatencyHistogram histogram = histograms[section];
+      out.append(
+          String.format(
+              Locale.US,
+              "%-11s %6.2f %6.2f %6.2f%n",
+              SECTION_NAMES[section],
+              histogram.getPercentileNanos(50) / 1e6,
+              histogram.getPercentileNanos(95) / 1e6,
+              histogram.getPercentileNanos(99) / 1e6));
+    }
+    out.append("nodes ").append(enabledNodeCount);
+    out.append(", renderables ").append(renderableCount);
+  }
+
+  /**
+   * Writes every section for offline analysis: a summary line per section, then the non-empty
+   * buckets of every histogram. All durations are in nanoseconds.
+   */
+  public static void writeTo(Appendable out) throws IOException {
+    out.append("# section count p50 p95 p99 max\n");
+    for (int section = 0; section < SECTION_COUNT; section++) {
+      LatencyHistogram histogram = histograms[section];
+      out.append(
+          String.format(
+              Locale.US,
+              "%s %d %d %d %d %d%n",
+              SECTION_NAMES[section],
+              histogram.getCount(),
+              histogram.getPercentileNanos(50),
+              histogram.getPercentileNanos(95),
+              histogram.getPercentileNanos(99),
+              histogram.getMaxNanos()));
+    }
+    out.append("# nodes ")
+        .append(Integer.toString(enabledNodeCount))
+        .append(" renderables ")
+        .append(Integer.toString(renderableCount))
+        .append('\n');
+    out.append("# section lower upper count\n");
+    for (int section = 0; section < SECTION_COUNT; section++) {
+      histograms[section].writeBuckets(SECTION_NAMES[section], out);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.widget.TextView;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.ViewRenderable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Closes every frame of {@link FrameStats} and shows its percentiles in the scene.
+ *
+ * <p>Register with {@link Scene#addOnUpdateListener} before every other listener, so each call
+ * records the frame that just finished. Nodes and renderables are counted and the text is
+ * refreshed a few times per second rather than every frame.
+ */
+public class FrameStatsOverlay implements Scene.OnUpdateListener {
+  private static final float REFRESH_INTERVAL_SECONDS = 0.5f;
+
+  private final Scene scene;
+  private final Node node = new Node();
+  private TextView textView;
+  private final StringBuilder text = new StringBuilder();
+  private float secondsSinceRefresh = 0.0f;
+
+  private int enabledNodeCount;
+  private int renderableCount;
+  private final Consumer<Node> nodeCounter =
+      counted -> {
+        if (counted.isEnabled()) {
+          enabledNodeCount++;
+          if (counted.getRenderable() != null) {
+            renderableCount++;
+          }
+        }
+      };
+
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  public FrameStatsOverlay(Context context, Scene scene) {
+    this.scene = scene;
+    node.setEnabled(false);
+    ViewRenderable.builder()
+        .setView(context, R.layout.frame_stats_view)
+        .build()
+        .thenAccept(
+            renderable -> {
+              node.setRenderable(renderable);
+              textView = (TextView) renderable.getView();
+            });
+  }
+
+  /** Places the overlay in the scene, relative to {@code parent}. Hidden until toggled. */
+  public void attachTo(Node parent, Vector3 localPosition) {
+    node.setParent(parent);
+    node.setLocalPosition(localPosition);
+  }
+
+  public void setShown(boolean shown) {
+    node.setEnabled(shown);
+    secondsSinceRefresh = REFRESH_INTERVAL_SECONDS;
+  }
+
+  public boolean isShown() {
+    return node.isEnabled();
+  }
+
+  /** Writes the recorded stats to {@code file}, see {@link FrameStats#writeTo}. */
+  public void dump(File file) throws IOException {
+    try (Writer writer = new FileWriter(file)) {
+      FrameStats.writeTo(writer);
+    }
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    FrameStats.endFrame((long) (frameTime.getDeltaSeconds() * 1e9));
+
+    secondsSinceRefresh += frameTime.getDeltaSeconds();
+    if (secondsSinceRefresh < REFRESH_INTERVAL_SECONDS) {
+      return;
+    }
+    secondsSinceRefresh = 0.0f;
+
+    enabledNodeCount = 0;
+    renderableCount = 0;
+    scene.callOnHierarchy(nodeCounter);
+    FrameStats.setSceneCounts(enabledNodeCount, renderableCount);
+
+    if (textView != null && node.isEnabled()) {
+      text.setLength(0);
+      FrameStats.appendSummary(text);
+      textView.setText(text);
+    }
+  }
+}
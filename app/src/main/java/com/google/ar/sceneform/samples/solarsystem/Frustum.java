@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * The six planes of a camera's view volume, for testing bounding spheres.
+ *
+ * <p>Matrices are column-major 4x4 arrays, as stored in Sceneform's {@code Matrix.data}.
+ */
+public class Frustum {
+  private static final int PLANE_COUNT = 6;
+
+  // Normalized plane equations as abcd quadruples, pointing into the view volume.
+  private final float[] planes = new float[PLANE_COUNT * 4];
+  private final float[] viewProjection = new float[16];
+
+  /** Extracts the planes of the view volume from a camera's view and projection matrices. */
+  public void set(float[] view, float[] projection) {
+    float[] m = viewProjection;
+    for (int column = 0; column < 4; column++) {
+      for (int row = 0; row < 4; row++) {
+        m[column * 4 + row] =
+            projection[row] * view[column * 4]
+                + projection[4 + row] * view[column * 4 + 1]
+                + projection[8 + row] * view[column * 4 + 2]
+                + projection[12 + row] * view[column * 4 + 3];
+      }
+    }
+
+    // Each plane is the last row of the matrix plus or minus one of the others.
+    for (int plane = 0; plane < PLANE_COUNT; plane++) {
+      int row = plane >> 1;
+      float sign = (plane & 1) == 0 ? 1.0f : -1.0f;
+      float a = m[3] + sign * m[row];
+      float b = m[7] + sign * m[4 + row];
+      float c = m[11] + sign * m[8 + row];
+      float d = m[15] + sign * m[12 + row];
+      float length = (float) Math.sqrt(a * a + b * b + c * c);
+      int p = plane * 4;
+      planes[p] = a / length;
+      planes[p + 1] = b / length;
+      planes[p + 2] = c / length;
+      planes[p + 3] = d / length;
+    }
+  }
+
+  /** Returns false if a sphere lies entirely outside the view volume. */
+  public boolean intersectsSphere(float x, float y, float z, float radius) {
+    for (int p = 0; p < PLANE_COUNT * 4; p += 4) {
+      if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * A bitmap with every glyph {@link LabelMesh} can draw, rendered once with an outline so the text
+ * stays readable in front of any background.
+ *
+ * <p>Glyphs are laid out in a grid of equally sized cells, each as tall as a line of text.
+ */
+final class GlyphAtlas {
+  private static final int COLUMNS = 16;
+  private static final float TEXT_SIZE_PX = 48.0f;
+  private static final float OUTLINE_PX = 4.0f;
+
+  private final Bitmap bitmap;
+  private final float[] glyphUvs = new float[LabelMesh.GLYPH_COUNT * 4];
+  private final float[] glyphAdvances = new float[LabelMesh.GLYPH_COUNT];
+
+  GlyphAtlas() {
+    Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    paint.setTextSize(TEXT_SIZE_PX);
+    paint.setTypeface(Typeface.DEFAULT_BOLD);
+    paint.setStrokeWidth(OUTLINE_PX);
+    paint.setStrokeJoin(Paint.Join.ROUND);
+    Paint.FontMetrics font = paint.getFontMetrics();
+
+    // Cells leave room for the outline on every side, so neighbouring glyphs never bleed into each
+    // other when the atlas is filtered.
+    float[] widths = new float[1];
+    float maxWidth = 0.0f;
+    for (int glyph = 0; glyph < LabelMesh.GLYPH_COUNT; glyph++) {
+      paint.getTextWidths(String.valueOf((char) (LabelMesh.FIRST_CHAR + glyph)), widths);
+      maxWidth = Math.max(maxWidth, widths[0]);
+    }
+    float lineHeight = font.descent - font.ascent + OUTLINE_PX * 2;
+    int cellWidth = (int) Math.ceil(maxWidth + OUTLINE_PX * 2);
+    int cellHeight = (int) Math.ceil(lineHeight);
+    int rows = (LabelMesh.GLYPH_COUNT + COLUMNS - 1) / COLUMNS;
+    int width = cellWidth * COLUMNS;
+    int height = cellHeight * rows;
+
+    bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(bitmap);
+    for (int glyph = 0; glyph < LabelMesh.GLYPH_COUNT; glyph++) {
+      String text = String.valueOf((char) (LabelMesh.FIRST_CHAR + glyph));
+      paint.getTextWidths(text, widths);
+      float cellX = (glyph % COLUMNS) * cellWidth;
+      float cellY = (glyph / COLUMNS) * cellHeight;
+      float x = cellX + OUTLINE_PX;
+      float baseline = cellY + OUTLINE_PX - font.ascent;
+
+      paint.setStyle(Paint.Style.STROKE);
+      paint.setColor(Color.BLACK);
+      canvas.drawText(text, x, baseline, paint);
+      paint.setStyle(Paint.Style.FILL);
+      paint.setColor(Color.WHITE);
+      canvas.drawText(text, x, baseline, paint);
+
+      // The quad covers the glyph's advance plus its outline. Texture v runs bottom up.
+      float glyphWidth = widths[0] + OUTLINE_PX * 2;
+      int g = glyph * 4;
+      glyphUvs[g] = cellX / width;
+      glyphUvs[g + 1] = 1.0f - (cellY + lineHeight) / height;
+      glyphUvs[g + 2] = (cellX + glyphWidth) / width;
+      glyphUvs[g + 3] = 1.0f - cellY / height;
+      glyphAdvances[glyph] = glyphWidth / lineHeight;
+    }
+  }
+
+  Bitmap getBitmap() {
+    return bitmap;
+  }
+
+  /** u0, v0, u1, v1 of each glyph, see {@link LabelMesh}. */
+  float[] getGlyphUvs() {
+    return glyphUvs;
+  }
+
+  /** Width of each glyph, in line heights. */
+  float[] getGlyphAdvances() {
+    return glyphAdvances;
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Moves bodies under their mutual gravity, as an alternative to the fixed orbits of {@link
+ * BodySimulation}.
+ *
+ * <p>Bodies start from their orbits, see {@link #addBody}, and are then integrated with a
+ * kick-drift-kick leapfrog at a fixed step. Leapfrog is symplectic and time reversible, so orbits
+ * neither spiral in nor out over long runs and the clock can run backwards with a negative step.
+ *
+ * <p>Small systems sum the gravity of every pair directly. From {@link #TREE_MIN_BODIES} bodies on
+ * a {@link GravityTree} approximates it in O(n log n), and the bodies are split across the cores
+ * of a {@link ForkJoinPool}. Units are astronomical units, days and solar masses; positions use
+ * Sceneform's axes like {@link KeplerOrbit}.
+ *
+ * <p>Not thread safe: a single thread at a time may call the methods. In the app that is the
+ * simulation thread of {@link SimulationLoop}.
+ */
+public class GravitySimulation {
+  /** The Gaussian gravitational constant squared, in AU^3 / (solar mass * day^2). */
+  static final double GRAVITATIONAL_CONSTANT = 0.01720209895 * 0.01720209895;
+
+  /** Integration step, short enough for the Moon's 27 day orbit. */
+  public static final double STEP_DAYS = 0.125;
+
+  /**
+   * From this many bodies on, gravity is approximated with a tree and computed in parallel. Below
+   * it, summing every pair once is faster than walking the tree for every body.
+   */
+  static final int TREE_MIN_BODIES = 2048;
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Bodies per fork-join task. Large enough that the split costs little next to the tree walks.
+  private static final int BODIES_PER_TASK = 256;
+  private static final double OPENING_ANGLE = 0.5;
+  // Keeps close encounters finite. About 1500 km, well inside the Moon's orbit so it doesn't weaken
+  // the Earth's pull on it.
+  private static final double SOFTENING_AU = 1e-5;
+
+  private final ForkJoinPool pool;
+  private final GravityTree tree = new GravityTree(OPENING_ANGLE, SOFTENING_AU);
+  private final double[] scratchState = new double[6];
+
+  private int bodyCount = 0;
+  private OrbitalElements[] orbits = new OrbitalElements[INITIAL_CAPACITY];
+  private int[] parents = new int[INITIAL_CAPACITY];
+  private int[] sceneBodies = new int[INITIAL_CAPACITY];
+  // Masses multiplied by the gravitational constant.
+  private double[] gravitationalMasses = new double[INITIAL_CAPACITY];
+  private double[] positions = new double[INITIAL_CAPACITY * 3];
+  private double[] velocities = new double[INITIAL_CAPACITY * 3];
+  private double[] accelerations = new double[INITIAL_CAPACITY * 3];
+  // Accelerations are kept from the end of one step to the start of the next.
+  private boolean accelerationsValid = false;
+
+  private double days = 0.0;
+
+  /** Evaluates gravity on the common fork-join pool. */
+  public GravitySimulation() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public GravitySimulation(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /** The pool gravity is evaluated on, also a good place to run {@link #advance} from. */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Adds a body, placed on its orbit around its parent at the current time.
+   *
+   * @param mass mass of the body, in solar masses
+   * @param parent index of the body it orbits, or -1 for a body that starts at rest at the origin
+   * @param orbit the starting orbit around the parent, null if there is no parent
+   * @param sceneBody index of the {@link BodySimulation} body this one moves, or -1
+   * @return the index of the body
+   */
+  public int addBody(double mass, int parent, OrbitalElements orbit, int sceneBody) {
+    if (parent >= bodyCount || (parent < 0) != (orbit == null)) {
+      throw new IllegalArgumentException("A body needs an orbit around a body added before it");
+    }
+    ensureCapacity(bodyCount + 1);
+    int index = bodyCount++;
+    orbits[index] = orbit;
+    parents[index] = parent;
+    sceneBodies[index] = sceneBody;
+    gravitationalMasses[index] = mass * GRAVITATIONAL_CONSTANT;
+    placeOnOrbit(index);
+    accelerationsValid = false;
+    return index;
+  }
+
+  public int getBodyCount() {
+    return bodyCount;
+  }
+
+  /** Index of the {@link BodySimulation} body that a body moves, or -1. */
+  public int getSceneBody(int index) {
+    return sceneBodies[index];
+  }
+
+  /** Simulation time, in days since J2000. */
+  public double getDays() {
+    return days;
+  }
+
+  /**
+   * Places every body back on its orbit at a time. The system's center of mass is then moved to
+   * rest at the origin, so it doesn't drift away over long runs.
+   */
+  public void reset(double days) {
+    this.days = days;
+    for (int i = 0; i < bodyCount; i++) {
+      placeOnOrbit(i);
+    }
+
+    double totalMass = 0.0;
+    double[] center = new double[6];
+    for (int i = 0; i < bodyCount; i++) {
+      double mass = gravitationalMasses[i];
+      totalMass += mass;
+      for (int axis = 0; axis < 3; axis++) {
+        center[axis] += positions[i * 3 + axis] * mass;
+        center[axis + 3] += velocities[i * 3 + axis] * mass;
+      }
+    }
+    if (totalMass > 0.0) {
+      for (int i = 0; i < bodyCount; i++) {
+        for (int axis = 0; axis < 3; axis++) {
+          positions[i * 3 + axis] -= center[axis] / totalMass;
+          velocities[i * 3 + axis] -= center[axis + 3] / totalMass;
+        }
+      }
+    }
+    accelerationsValid = false;
+  }
+
+  /**
+   * Integrates towards a time in whole steps of {@link #STEP_DAYS}, backwards if it lies in the
+   * past. Stops within a step of the target, or earlier after {@code maxSteps}, so a slow device
+   * falls behind the clock instead of taking ever longer per call.
+   *
+   * @return the number of steps taken
+   */
+  public int advance(double targetDays, int maxSteps) {
+    int steps = (int) Math.min(maxSteps, Math.floor(Math.abs(targetDays - days) / STEP_DAYS));
+    double step = targetDays < days ? -STEP_DAYS : STEP_DAYS;
+    for (int i = 0; i < steps; i++) {
+      step(step);
+    }
+    return steps;
+  }
+
+  /** Advances every body by one leapfrog step of {@code stepDays}, which may be negative. */
+  public void step(double stepDays) {
+    if (!accelerationsValid) {
+      computeAccelerations();
+    }
+    double halfStep = stepDays * 0.5;
+    int length = bodyCount * 3;
+    for (int i = 0; i < length; i++) {
+      velocities[i] += accelerations[i] * halfStep;
+      positions[i] += velocities[i] * stepDays;
+    }
+    computeAccelerations();
+    for (int i = 0; i < length; i++) {
+      velocities[i] += accelerations[i] * halfStep;
+    }
+    days += stepDays;
+  }
+
+  /**
+   * Writes the position of every body relative to its parent, in AU, to {@code out}. Bodies
+   * without a parent are written relative to the origin.
+   */
+  public void copyRelativePositions(float[] out) {
+    for (int i = 0; i < bodyCount; i++) {
+      int p = i * 3;
+      int parent = parents[i];
+      if (parent < 0) {
+        out[p] = (float) positions[p];
+        out[p + 1] = (float) positions[p + 1];
+        out[p + 2] = (float) positions[p + 2];
+      } else {
+        int q = parent * 3;
+        out[p] = (float) (positions[p] - positions[q]);
+        out[p + 1] = (float) (positions[p + 1] - positions[q + 1]);
+        out[p + 2] = (float) (positions[p + 2] - positions[q + 2]);
+      }
+    }
+  }
+
+  private void placeOnOrbit(int index) {
+    int p = index * 3;
+    int parent = parents[index];
+    if (parent < 0) {
+      Arrays.fill(positions, p, p + 3, 0.0);
+      Arrays.fill(velocities, p, p + 3, 0.0);
+      return;
+    }
+
+    KeplerOrbit.computeState(orbits[index], days, scratchState, 0);
+    // A planet's orbit describes the barycenter of the planet and its moons, like the Earth-Moon
+    // barycenter. Split a moon's offset between the two so the pair keeps moving along that orbit;
+    // otherwise the planet starts slightly too fast and drifts ahead of it.
+    double parentShare = 0.0;
+    if (parents[parent] >= 0) {
+      parentShare =
+          gravitationalMasses[index] / (gravitationalMasses[index] + gravitationalMasses[parent]);
+    }
+    int q = parent * 3;
+    for (int axis = 0; axis < 3; axis++) {
+      positions[p + axis] = positions[q + axis] + scratchState[axis] * (1.0 - parentShare);
+      velocities[p + axis] = velocities[q + axis] + scratchState[axis + 3] * (1.0 - parentShare);
+      positions[q + axis] -= scratchState[axis] * parentShare;
+      velocities[q + axis] -= scratchState[axis + 3] * parentShare;
+    }
+  }
+
+  private void computeAccelerations() {
+    if (bodyCount < TREE_MIN_BODIES) {
+      computeDirectAccelerations();
+    } else {
+      tree.build(positions, gravitationalMasses, bodyCount);
+      pool.invoke(new AccelerationTask(0, bodyCount));
+    }
+    accelerationsValid = true;
+  }
+
+  /** Sums the gravity of every pair, which is exact and faster than the tree for few bodies. */
+  private void computeDirectAccelerations() {
+    double softeningSquared = SOFTENING_AU * SOFTENING_AU;
+    Arrays.fill(accelerations, 0, bodyCount * 3, 0.0);
+    for (int i = 0; i < bodyCount; i++) {
+      int p = i * 3;
+      for (int j = i + 1; j < bodyCount; j++) {
+        int q = j * 3;
+        double dx = positions[q] - positions[p];
+        double dy = positions[q + 1] - positions[p + 1];
+        double dz = positions[q + 2] - positions[p + 2];
+        double distanceSquared = dx * dx + dy * dy + dz * dz + softeningSquared;
+        double inverseCube = 1.0 / (distanceSquared * Math.sqrt(distanceSquared));
+        double towardsJ = gravitationalMasses[j] * inverseCube;
+        double towardsI = gravitationalMasses[i] * inverseCube;
+        accelerations[p] += dx * towardsJ;
+        accelerations[p + 1] += dy * towardsJ;
+        accelerations[p + 2] += dz * towardsJ;
+        accelerations[q] -= dx * towardsI;
+        accelerations[q + 1] -= dy * towardsI;
+        accelerations[q + 2] -= dz * towardsI;
+      }
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= orbits.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, orbits.length * 2);
+    orbits = Arrays.copyOf(orbits, newCapacity);
+    parents = Arrays.copyOf(parents, newCapacity);
+    sceneBodies = Arrays.copyOf(sceneBodies, newCapacity);
+    gravitationalMasses = Arrays.copyOf(gravitationalMasses, newCapacity);
+    positions = Arrays.copyOf(positions, newCapacity * 3);
+    velocities = Arrays.copyOf(velocities, newCapacity * 3);
+    accelerations = Arrays.copyOf(accelerations, newCapacity * 3);
+  }
+
+  /** Splits the bodies in halves until each task walks the tree for a batch of them. */
+  private final class AccelerationTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int start;
+    private final int end;
+
+    AccelerationTask(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= BODIES_PER_TASK) {
+        int[] stack = new int[GravityTree.stackSize()];
+        for (int i = start; i < end; i++) {
+          tree.computeAcceleration(i, stack, accelerations, i * 3);
+        }
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(new AccelerationTask(start, middle), new AccelerationTask(middle, end));
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Barnes-Hut octree that approximates the gravity of many bodies in O(n log n).
+ *
+ * <p>The tree is rebuilt from the positions of every body with {@link #build}. A cell that is far
+ * enough from a body, compared to its size, acts on it as a single mass at its center of mass.
+ * Cells live in flat arrays that only grow, so rebuilding the tree every step doesn't allocate.
+ *
+ * <p>After a build, {@link #computeAcceleration} only reads the tree and can be called from several
+ * threads at once.
+ */
+final class GravityTree {
+  // Leaves hold up to this many bodies, which are summed directly. Walking down to single bodies
+  // would visit more cells than it saves interactions.
+  private static final int LEAF_CAPACITY = 8;
+  // Past this depth, bodies at nearly the same position share a leaf however many they are.
+  private static final int MAX_DEPTH = 32;
+  private static final int EMPTY = -1;
+  private static final int INTERNAL = -2;
+
+  private final double openingAngleSquared;
+  private final double softeningSquared;
+
+  private int cellCount = 0;
+  // Geometric center and half the edge length of each cell.
+  private double[] centers = new double[0];
+  private double[] halfSizes = new double[0];
+  // Total mass and center of mass of the bodies in each cell.
+  private double[] masses = new double[0];
+  private double[] centersOfMass = new double[0];
+  // Index of the first of eight consecutive children, for internal cells.
+  private int[] firstChild = new int[0];
+  // First body of a leaf, EMPTY or INTERNAL. Bodies sharing a leaf are chained with nextBody.
+  private int[] firstBody = new int[0];
+  private int[] leafCounts = new int[0];
+  private int[] depths = new int[0];
+  private int[] nextBody = new int[0];
+
+  private double[] positions;
+  private double[] bodyMasses;
+
+  /**
+   * @param openingAngle cells whose size divided by their distance is below this are approximated
+   *     by their center of mass; 0 evaluates every pair exactly
+   * @param softening length added to every distance, so close encounters stay finite
+   */
+  GravityTree(double openingAngle, double softening) {
+    this.openingAngleSquared = openingAngle * openingAngle;
+    this.softeningSquared = softening * softening;
+  }
+
+  /**
+   * Builds the tree for the first {@code bodyCount} bodies. The arrays are kept, not copied, until
+   * the next build.
+   *
+   * @param positions xyz positions of the bodies
+   * @param bodyMasses mass of each body, multiplied by the gravitational constant
+   */
+  void build(double[] positions, double[] bodyMasses, int bodyCount) {
+    this.positions = positions;
+    this.bodyMasses = bodyMasses;
+    cellCount = 0;
+    if (bodyCount == 0) {
+      return;
+    }
+    if (nextBody.length < bodyCount) {
+      nextBody = new int[bodyCount];
+    }
+
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double minZ = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double maxZ = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < bodyCount; i++) {
+      int p = i * 3;
+      minX = Math.min(minX, positions[p]);
+      minY = Math.min(minY, positions[p + 1]);
+      minZ = Math.min(minZ, positions[p + 2]);
+      maxX = Math.max(maxX, positions[p]);
+      maxY = Math.max(maxY, positions[p + 1]);
+      maxZ = Math.max(maxZ, positions[p + 2]);
+    }
+
+    // The root is slightly larger than the bounds, so no body lies exactly on its far faces.
+    double halfSize = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ)) * 0.5005 + 1e-12;
+    int root = addCell((minX + maxX) * 0.5, (minY + maxY) * 0.5, (minZ + maxZ) * 0.5, halfSize, 0);
+    for (int i = 0; i < bodyCount; i++) {
+      insert(root, i);
+    }
+
+    // Children are always added after their parent, so walking backwards sums every cell after all
+    // of its children.
+    for (int cell = cellCount - 1; cell >= 0; cell--) {
+      double mass = 0.0;
+      double x = 0.0;
+      double y = 0.0;
+      double z = 0.0;
+      if (firstBody[cell] == INTERNAL) {
+        for (int child = firstChild[cell]; child < firstChild[cell] + 8; child++) {
+          double childMass = masses[child];
+          int c = child * 3;
+          mass += childMass;
+          x += centersOfMass[c] * childMass;
+          y += centersOfMass[c + 1] * childMass;
+          z += centersOfMass[c + 2] * childMass;
+        }
+      } else {
+        for (int body = firstBody[cell]; body != EMPTY; body = nextBody[body]) {
+          double bodyMass = bodyMasses[body];
+          int p = body * 3;
+          mass += bodyMass;
+          x += positions[p] * bodyMass;
+          y += positions[p + 1] * bodyMass;
+          z += positions[p + 2] * bodyMass;
+        }
+      }
+      int c = cell * 3;
+      masses[cell] = mass;
+      if (mass > 0.0) {
+        centersOfMass[c] = x / mass;
+        centersOfMass[c + 1] = y / mass;
+        centersOfMass[c + 2] = z / mass;
+      } else {
+        centersOfMass[c] = centers[c];
+        centersOfMass[c + 1] = centers[c + 1];
+        centersOfMass[c + 2] = centers[c + 2];
+      }
+    }
+  }
+
+  /**
+   * Writes the acceleration of a body due to every other body into {@code out[offset..offset + 2]}.
+   *
+   * @param stack scratch space of at least {@link #stackSize} entries, one per calling thread
+   */
+  void computeAcceleration(int body, int[] stack, double[] out, int offset) {
+    int p = body * 3;
+    double bx = positions[p];
+    double by = positions[p + 1];
+    double bz = positions[p + 2];
+    double ax = 0.0;
+    double ay = 0.0;
+    double az = 0.0;
+
+    int top = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int cell = stack[--top];
+      double mass = masses[cell];
+      int first = firstBody[cell];
+      if (first == INTERNAL) {
+        int c = cell * 3;
+        double dx = centersOfMass[c] - bx;
+        double dy = centersOfMass[c + 1] - by;
+        double dz = centersOfMass[c + 2] - bz;
+        double distanceSquared = dx * dx + dy * dy + dz * dz;
+        double size = halfSizes[cell] * 2.0;
+        if (size * size < openingAngleSquared * distanceSquared && !contains(cell, bx, by, bz)) {
+          double factor = mass * inverseCube(distanceSquared);
+          ax += dx * factor;
+          ay += dy * factor;
+          az += dz * factor;
+        } else {
+          for (int child = firstChild[cell]; child < firstChild[cell] + 8; child++) {
+            if (masses[child] != 0.0) {
+              stack[top++] = child;
+            }
+          }
+        }
+      } else {
+        for (int other = first; other != EMPTY; other = nextBody[other]) {
+          if (other == body) {
+            continue;
+          }
+          int o = other * 3;
+          double dx = positions[o] - bx;
+          double dy = positions[o + 1] - by;
+          double dz = positions[o + 2] - bz;
+          double factor = bodyMasses[other] * inverseCube(dx * dx + dy * dy + dz * dz);
+          ax += dx * factor;
+          ay += dy * factor;
+          az += dz * factor;
+        }
+      }
+    }
+
+    out[offset] = ax;
+    out[offset + 1] = ay;
+    out[offset + 2] = az;
+  }
+
+  /** Scratch space {@link #computeAcceleration} needs: seven cells per level, then eight more. */
+  static int stackSize() {
+    return 7 * MAX_DEPTH + 8;
+  }
+
+  private double inverseCube(double distanceSquared) {
+    double softened = distanceSquared + softeningSquared;
+    return 1.0 / (softened * Math.sqrt(softened));
+  }
+
+  private boolean contains(int cell, double x, double y, double z) {
+    int c = cell * 3;
+    double halfSize = halfSizes[cell];
+    return Math.abs(x - centers[c]) <= halfSize
+        && Math.abs(y - centers[c + 1]) <= halfSize
+        && Math.abs(z - centers[c + 2]) <= halfSize;
+  }
+
+  private void insert(int cell, int body) {
+    while (firstBody[cell] == INTERNAL) {
+      cell = firstChild[cell] + octant(cell, body);
+    }
+    if (leafCounts[cell] < LEAF_CAPACITY || depths[cell] >= MAX_DEPTH) {
+      addToLeaf(cell, body);
+      return;
+    }
+
+    // Split the full leaf and move its bodies down, then try again from the new children.
+    int moved = firstBody[cell];
+    split(cell);
+    while (moved != EMPTY) {
+      int next = nextBody[moved];
+      addToLeaf(firstChild[cell] + octant(cell, moved), moved);
+      moved = next;
+    }
+    insert(cell, body);
+  }
+
+  private void addToLeaf(int cell, int body) {
+    nextBody[body] = firstBody[cell];
+    firstBody[cell] = body;
+    leafCounts[cell]++;
+  }
+
+  private void split(int cell) {
+    int c = cell * 3;
+    double quarter = halfSizes[cell] * 0.5;
+    int depth = depths[cell] + 1;
+    int first = cellCount;
+    for (int octant = 0; octant < 8; octant++) {
+      addCell(
+          centers[c] + ((octant & 1) != 0 ? quarter : -quarter),
+          centers[c + 1] + ((octant & 2) != 0 ? quarter : -quarter),
+          centers[c + 2] + ((octant & 4) != 0 ? quarter : -quarter),
+          quarter,
+          depth);
+    }
+    firstChild[cell] = first;
+    firstBody[cell] = INTERNAL;
+  }
+
+  private int octant(int cell, int body) {
+    int c = cell * 3;
+    int p = body * 3;
+    return (positions[p] >= centers[c] ? 1 : 0)
+        | (positions[p + 1] >= centers[c + 1] ? 2 : 0)
+        | (positions[p + 2] >= centers[c + 2] ? 4 : 0);
+  }
+
+  private int addCell(double x, double y, double z, double halfSize, int depth) {
+    if (cellCount == halfSizes.length) {
+      int capacity = Math.max(64, cellCount * 2);
+      centers = Arrays.copyOf(centers, capacity * 3);
+      halfSizes = Arrays.copyOf(halfSizes, capacity);
+      masses = Arrays.copyOf(masses, capacity);
+      centersOfMass = Arrays.copyOf(centersOfMass, capacity * 3);
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      firstBody = Arrays.copyOf(firstBody, capacity);
+      leafCounts = Arrays.copyOf(leafCounts, capacity);
+      depths = Arrays.copyOf(depths, capacity);
+    }
+    int cell = cellCount++;
+    int c = cell * 3;
+    centers[c] = x;
+    centers[c + 1] = y;
+    centers[c + 2] = z;
+    halfSizes[cell] = halfSize;
+    firstBody[cell] = EMPTY;
+    leafCounts[cell] = 0;
+    depths[cell] = depth;
+    return cell;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Evaluates body positions directly from {@link OrbitalElements} and a simulation time.
+ *
+ * <p>This class only uses plain Java so it can be run and measured off-device. None of the methods
+ * allocate, which makes them safe to call for every body on every frame.
+ *
+ * <p>Positions are returned in Sceneform's axis convention: the ecliptic is the x-z plane and the
+ * ecliptic north pole points along +y.
+ */
+public final class KeplerOrbit {
+  private static final int MAX_ITERATIONS = 16;
+  private static final double TOLERANCE = 1e-12;
+  private static final double TWO_PI = 2.0 * Math.PI;
+
+  private KeplerOrbit() {}
+
+  /**
+   * Solves Kepler's equation {@code M = E - e sin(E)} for the eccentric anomaly E using Newton's
+   * method.
+   *
+   * @param meanAnomaly the mean anomaly M in radians
+   * @param eccentricity the orbit eccentricity, in [0, 1)
+   * @return the eccentric anomaly in radians, in the same revolution as {@code meanAnomaly}
+   */
+  public static double solveEccentricAnomaly(double meanAnomaly, double eccentricity) {
+    // Work on M in [-pi, pi] so the starting guess is always close to the root.
+    double revolutions = Math.floor((meanAnomaly + Math.PI) / TWO_PI);
+    double m = meanAnomaly - revolutions * TWO_PI;
+
+    // Starting from pi for very eccentric orbits avoids overshooting near periapsis.
+    double e = eccentricity < 0.8 ? m + eccentricity * Math.sin(m) : (m < 0.0 ? -Math.PI : Math.PI);
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      double delta = (e - eccentricity * Math.sin(e) - m) / (1.0 - eccentricity * Math.cos(e));
+      e -= delta;
+      if (Math.abs(delta) < TOLERANCE) {
+        break;
+      }
+    }
+    return e + revolutions * TWO_PI;
+  }
+
+  /**
+   * Writes the position of a body relative to its parent into {@code out[offset..offset + 2]}.
+   *
+   * @param elements the orbit of the body
+   * @param daysSinceEpoch simulation time in days since J2000
+   * @param out destination for the x, y and z components, in astronomical units
+   * @param offset index of the x component in {@code out}
+   */
+  public static void computePosition(
+      OrbitalElements elements, double daysSinceEpoch, float[] out, int offset) {
+    double meanAnomaly = elements.meanAnomalyAtEpoch + elements.meanMotion * daysSinceEpoch;
+    double eccentricAnomaly =
+        solveEccentricAnomaly(meanAnomaly, elements.getEccentricity());
+
+    double a = elements.getSemiMajorAxisAu();
+    double xv = a * (Math.cos(eccentricAnomaly) - elements.getEccentricity());
+    double yv = a * elements.minorAxisRatio * Math.sin(eccentricAnomaly);
+
+    double x = xv * elements.px + yv * elements.qx;
+    double y = xv * elements.py + yv * elements.qy;
+    double z = xv * elements.pz + yv * elements.qz;
+
+    // Ecliptic (x, y, z-north) to Sceneform (x, y-up, z-towards-viewer).
+    out[offset] = (float) x;
+    out[offset + 1] = (float) z;
+    out[offset + 2] = (float) -y;
+  }
+
+  /**
+   * Writes the position and velocity of a body relative to its parent into {@code
+   * out[offset..offset + 5]}, in double precision, for example to start a {@link
+   * GravitySimulation} from.
+   *
+   * @param elements the orbit of the body
+   * @param daysSinceEpoch simulation time in days since J2000
+   * @param out destination for the x, y and z position in astronomical units, followed by the
+   *     velocity in astronomical units per day
+   * @param offset index of the x component of the position in {@code out}
+   */
+  public static void computeState(
+      OrbitalElements elements, double daysSinceEpoch, double[] out, int offset) {
+    double eccentricity = elements.getEccentricity();
+    double meanAnomaly = elements.meanAnomalyAtEpoch + elements.meanMotion * daysSinceEpoch;
+    double eccentricAnomaly = solveEccentricAnomaly(meanAnomaly, eccentricity);
+    double sinE = Math.sin(eccentricAnomaly);
+    double cosE = Math.cos(eccentricAnomaly);
+
+    double a = elements.getSemiMajorAxisAu();
+    double b = a * elements.minorAxisRatio;
+    double xv = a * (cosE - eccentricity);
+    double yv = b * sinE;
+    // dE/dt from differentiating Kepler's equation.
+    double eccentricAnomalyRate = elements.meanMotion / (1.0 - eccentricity * cosE);
+    double vxv = -a * sinE * eccentricAnomalyRate;
+    double vyv = b * cosE * eccentricAnomalyRate;
+
+    out[offset] = xv * elements.px + yv * elements.qx;
+    out[offset + 1] = xv * elements.pz + yv * elements.qz;
+    out[offset + 2] = -(xv * elements.py + yv * elements.qy);
+    out[offset + 3] = vxv * elements.px + vyv * elements.qx;
+    out[offset + 4] = vxv * elements.pz + vyv * elements.qz;
+    out[offset + 5] = -(vxv * elements.py + vyv * elements.qy);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Glyph quads of many text labels, kept in flat arrays so they can be drawn as a single mesh.
+ *
+ * <p>Each label is laid out once when it is added, in units of the line height: lines are centered
+ * on the label's anchor and stacked upwards from it. {@link #place} then turns every quad of every
+ * label towards the camera at its anchor's current position. Quads of hidden labels collapse onto
+ * their anchor, so the mesh keeps the same vertices and triangles whichever labels are shown.
+ *
+ * <p>Glyphs come from an atlas covering the characters {@link #FIRST_CHAR} to {@link #LAST_CHAR};
+ * any other character is drawn as {@code '?'}.
+ */
+public final class LabelMesh {
+  public static final char FIRST_CHAR = ' ';
+  public static final char LAST_CHAR = '~';
+  public static final int GLYPH_COUNT = LAST_CHAR - FIRST_CHAR + 1;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // Per glyph: u0, v0, u1, v1 of its cell in the atlas, and its advance in line heights.
+  private final float[] glyphUvs;
+  private final float[] glyphAdvances;
+
+  private int labelCount = 0;
+  private boolean[] visible = new boolean[INITIAL_CAPACITY];
+  private int visibleCount = 0;
+
+  private int quadCount = 0;
+  private int[] quadLabels = new int[INITIAL_CAPACITY];
+  // Per quad: left, bottom, right and top relative to the anchor, and the matching u0, v0, u1, v1.
+  private float[] quadBounds = new float[INITIAL_CAPACITY * 4];
+  private float[] quadUvs = new float[INITIAL_CAPACITY * 4];
+
+  /**
+   * @param glyphUvs u0, v0, u1, v1 of each glyph from {@link #FIRST_CHAR} on, with v0 at the bottom
+   * @param glyphAdvances width of each glyph, in line heights
+   */
+  public LabelMesh(float[] glyphUvs, float[] glyphAdvances) {
+    if (glyphUvs.length != GLYPH_COUNT * 4 || glyphAdvances.length != GLYPH_COUNT) {
+      throw new IllegalArgumentException("Expected metrics for " + GLYPH_COUNT + " glyphs");
+    }
+    this.glyphUvs = glyphUvs.clone();
+    this.glyphAdvances = glyphAdvances.clone();
+  }
+
+  /**
+   * Lays out a label, which starts hidden. Lines are separated by {@code '\n'}.
+   *
+   * @return the index of the label
+   */
+  public int addLabel(String text) {
+    int label = labelCount++;
+    if (label == visible.length) {
+      visible = Arrays.copyOf(visible, label * 2);
+    }
+
+    String[] lines = text.split("\n", -1);
+    for (int line = 0; line < lines.length; line++) {
+      String chars = lines[line];
+      float width = 0.0f;
+      for (int i = 0; i < chars.length(); i++) {
+        width += glyphAdvances[glyph(chars.charAt(i))];
+      }
+
+      float x = -width * 0.5f;
+      float bottom = lines.length - 1 - line;
+      for (int i = 0; i < chars.length(); i++) {
+        int glyph = glyph(chars.charAt(i));
+        float advance = glyphAdvances[glyph];
+        if (chars.charAt(i) != ' ') {
+          addQuad(label, x, bottom, x + advance, bottom + 1.0f, glyph);
+        }
+        x += advance;
+      }
+    }
+    return label;
+  }
+
+  public int getLabelCount() {
+    return labelCount;
+  }
+
+  public boolean isVisible(int label) {
+    return visible[label];
+  }
+
+  public void setVisible(int label, boolean shown) {
+    if (visible[label] != shown) {
+      visible[label] = shown;
+      visibleCount += shown ? 1 : -1;
+    }
+  }
+
+  /** Number of labels that are shown. */
+  public int getVisibleCount() {
+    return visibleCount;
+  }
+
+  /** Number of glyph quads of every label, shown or not. */
+  public int getQuadCount() {
+    return quadCount;
+  }
+
+  /** u0, v0, u1, v1 of every quad. Read only. */
+  public float[] getQuadUvs() {
+    return quadUvs;
+  }
+
+  /**
+   * Writes the corners of every quad into {@code out}: bottom left, bottom right, top right and top
+   * left, as xyz. Each quad lies in the plane spanned by the camera's right and up axes.
+   *
+   * @param anchors xyz world position of each label; labels whose x is NaN are hidden as well
+   * @param camera the camera's world model matrix, column major
+   * @param lineHeight height of a line of text, in meters
+   * @param out at least 12 floats per quad
+   */
+  public void place(float[] anchors, float[] camera, float lineHeight, float[] out) {
+    float rightX = camera[0] * lineHeight;
+    float rightY = camera[1] * lineHeight;
+    float rightZ = camera[2] * lineHeight;
+    float upX = camera[4] * lineHeight;
+    float upY = camera[5] * lineHeight;
+    float upZ = camera[6] * lineHeight;
+
+    for (int quad = 0; quad < quadCount; quad++) {
+      int label = quadLabels[quad];
+      int a = label * 3;
+      float x = anchors[a];
+      float y = anchors[a + 1];
+      float z = anchors[a + 2];
+      int o = quad * 12;
+      if (!visible[label] || Float.isNaN(x)) {
+        // Zero area, so nothing is drawn. Without an anchor position, collapse onto the origin.
+        if (Float.isNaN(x)) {
+          x = 0.0f;
+          y = 0.0f;
+          z = 0.0f;
+        }
+        for (int corner = 0; corner < 4; corner++) {
+          out[o + corner * 3] = x;
+          out[o + corner * 3 + 1] = y;
+          out[o + corner * 3 + 2] = z;
+        }
+        continue;
+      }
+
+      int b = quad * 4;
+      float left = quadBounds[b];
+      float bottom = quadBounds[b + 1];
+      float right = quadBounds[b + 2];
+      float top = quadBounds[b + 3];
+      corner(out, o, x, y, z, left, bottom, rightX, rightY, rightZ, upX, upY, upZ);
+      corner(out, o + 3, x, y, z, right, bottom, rightX, rightY, rightZ, upX, upY, upZ);
+      corner(out, o + 6, x, y, z, right, top, rightX, rightY, rightZ, upX, upY, upZ);
+      corner(out, o + 9, x, y, z, left, top, rightX, rightY, rightZ, upX, upY, upZ);
+    }
+  }
+
+  private static void corner(
+      float[] out,
+      int offset,
+      float x,
+      float y,
+      float z,
+      float s,
+      float t,
+      float rightX,
+      float rightY,
+      float rightZ,
+      float upX,
+      float upY,
+      float upZ) {
+    out[offset] = x + rightX * s + upX * t;
+    out[offset + 1] = y + rightY * s + upY * t;
+    out[offset + 2] = z + rightZ * s + upZ * t;
+  }
+
+  private static int glyph(char c) {
+    return c >= FIRST_CHAR && c <= LAST_CHAR ? c - FIRST_CHAR : '?' - FIRST_CHAR;
+  }
+
+  private void addQuad(int label, float left, float bottom, float right, float top, int glyph) {
+    if (quadCount == quadLabels.length) {
+      quadLabels = Arrays.copyOf(quadLabels, quadCount * 2);
+      quadBounds = Arrays.copyOf(quadBounds, quadCount * 8);
+      quadUvs = Arrays.copyOf(quadUvs, quadCount * 8);
+    }
+    int quad = quadCount++;
+    quadLabels[quad] = label;
+    int b = quad * 4;
+    quadBounds[b] = left;
+    quadBounds[b + 1] = bottom;
+    quadBounds[b + 2] = right;
+    quadBounds[b + 3] = top;
+    System.arraycopy(glyphUvs, glyph * 4, quadUvs, b, 4);
+  }
+}
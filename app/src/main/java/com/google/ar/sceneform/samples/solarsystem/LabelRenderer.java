@@ -0,0 +1,236 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Material;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.RenderableDefinition;
+import com.google.ar.sceneform.rendering.RenderableDefinition.Submesh;
+import com.google.ar.sceneform.rendering.Texture;
+import com.google.ar.sceneform.rendering.Vertex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Draws the text labels of any number of bodies as a single mesh with a single texture.
+ *
+ * <p>Every glyph comes from a shared {@link GlyphAtlas}, and {@link LabelMesh} turns the glyph
+ * quads of all labels towards the camera once per frame. Showing or hiding a label only flips a
+ * flag, so no Android view is inflated and no texture is built per label. Labels follow anchor
+ * nodes and are left out while their anchor isn't active, for example while {@link BodyCuller}
+ * hides its body.
+ *
+ * <p>Register with {@link Scene#addOnUpdateListener} after the listeners that move the anchors.
+ * All methods must be called on the UI thread.
+ */
+@SuppressWarnings("AndroidApiChecker") // CompletableFuture requires api level 24
+public class LabelRenderer implements Scene.OnUpdateListener {
+  // Height of a line of text, in meters.
+  private static final float LINE_HEIGHT_METERS = 0.02f;
+
+  private final Scene scene;
+  private final Node node = new Node();
+  private final LabelMesh mesh;
+  private final ArrayList<Node> anchors = new ArrayList<>();
+  private float[] anchorPositions = new float[0];
+  private float[] corners = new float[0];
+
+  private Material material;
+  private ModelRenderable renderable;
+  private boolean building = false;
+  // Set when labels were added since the vertices were created.
+  private boolean meshChanged = false;
+
+  // One vertex per quad corner, updated in place every frame.
+  private final ArrayList<Vertex> vertices = new ArrayList<>();
+  private RenderableDefinition definition;
+  private final Vector3 scratchPosition = new Vector3();
+  private final Vector3 normal = new Vector3();
+
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public LabelRenderer(Context context, Scene scene) {
+    this.scene = scene;
+    GlyphAtlas atlas = new GlyphAtlas();
+    mesh = new LabelMesh(atlas.getGlyphUvs(), atlas.getGlyphAdvances());
+    node.setParent(scene);
+    node.setEnabled(false);
+
+    Texture.builder()
+        .setSource(atlas.getBitmap())
+        .build()
+        .thenCompose(texture -> MaterialFactory.makeTransparentWithTexture(context, texture))
+        .thenAccept(
+            loaded -> {
+              material = loaded;
+              meshChanged = true;
+            })
+        .exceptionally(
+            throwable -> {
+              DemoUtils.displayError(context, "Unable to build the label atlas", throwable);
+              return null;
+            });
+  }
+
+  /**
+   * Adds a hidden label that follows a node.
+   *
+   * @param anchor the label's lines are centered above this node's world position
+   * @param text the label, with lines separated by {@code '\n'}
+   * @return the index of the label
+   */
+  public int addLabel(Node anchor, String text) {
+    int label = mesh.addLabel(text);
+    anchors.add(anchor);
+    anchorPositions = Arrays.copyOf(anchorPositions, anchors.size() * 3);
+    corners = Arrays.copyOf(corners, mesh.getQuadCount() * 12);
+    meshChanged = true;
+    return label;
+  }
+
+  public boolean isVisible(int label) {
+    return mesh.isVisible(label);
+  }
+
+  public void setVisible(int label, boolean visible) {
+    mesh.setVisible(label, visible);
+  }
+
+  /** Shows or hides every label at once. */
+  public void setAllVisible(boolean visible) {
+    for (int label = 0; label < mesh.getLabelCount(); label++) {
+      mesh.setVisible(label, visible);
+    }
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    long startNanos = FrameStats.start();
+    if (meshChanged && material != null && !building) {
+      rebuildMesh();
+    }
+    boolean shown = renderable != null && !building && mesh.getVisibleCount() > 0;
+    if (node.isEnabled() != shown) {
+      node.setEnabled(shown);
+    }
+    if (shown) {
+      placeLabels();
+    }
+    FrameStats.stop(FrameStats.LISTENERS, startNanos);
+  }
+
+  /** Turns every shown label towards the camera at its anchor's position. */
+  private void placeLabels() {
+    for (int label = 0; label < anchors.size(); label++) {
+      Node anchor = anchors.get(label);
+      int a = label * 3;
+      if (anchor.isActive()) {
+        // Read the translation straight from the cached world matrix, getWorldPosition() would
+        // allocate.
+        float[] world = anchor.getWorldModelMatrix().data;
+        anchorPositions[a] = world[12];
+        anchorPositions[a + 1] = world[13];
+        anchorPositions[a + 2] = world[14];
+      } else {
+        anchorPositions[a] = Float.NaN;
+      }
+    }
+
+    float[] camera = scene.getCamera().getWorldModelMatrix().data;
+    mesh.place(anchorPositions, camera, LINE_HEIGHT_METERS, corners);
+    // Every quad faces the camera, so they all share its backward axis as their normal. Labels
+    // added since the vertices were created wait for the next rebuild.
+    normal.set(camera[8], camera[9], camera[10]);
+    for (int i = 0; i < vertices.size(); i++) {
+      int c = i * 3;
+      scratchPosition.set(corners[c], corners[c + 1], corners[c + 2]);
+      Vertex vertex = vertices.get(i);
+      vertex.setPosition(scratchPosition);
+      vertex.setNormal(normal);
+    }
+    renderable.updateFromDefinition(definition);
+  }
+
+  /** Creates the vertices and triangles for every label that was added so far. */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  private void rebuildMesh() {
+    meshChanged = false;
+    int quadCount = mesh.getQuadCount();
+    if (quadCount == 0) {
+      return;
+    }
+
+    float[] uvs = mesh.getQuadUvs();
+    ArrayList<Integer> triangles = new ArrayList<>(quadCount * 6);
+    vertices.clear();
+    for (int quad = 0; quad < quadCount; quad++) {
+      int u = quad * 4;
+      // Same corner order as LabelMesh.place: bottom left, bottom right, top right, top left.
+      addVertex(uvs[u], uvs[u + 1]);
+      addVertex(uvs[u + 2], uvs[u + 1]);
+      addVertex(uvs[u + 2], uvs[u + 3]);
+      addVertex(uvs[u], uvs[u + 3]);
+      int first = quad * 4;
+      Collections.addAll(triangles, first, first + 1, first + 2, first, first + 2, first + 3);
+    }
+    definition =
+        RenderableDefinition.builder()
+            .setVertices(vertices)
+            .setSubmeshes(
+                Collections.singletonList(
+                    Submesh.builder().setTriangleIndices(triangles).setMaterial(material).build()))
+            .build();
+
+    if (renderable != null) {
+      renderable.updateFromDefinition(definition);
+      return;
+    }
+    building = true;
+    ModelRenderable.builder()
+        .setSource(definition)
+        .build()
+        .thenAccept(
+            built -> {
+              // Labels are never tapped, and they'd hide the bodies behind them from hit tests.
+              built.setCollisionShape(null);
+              built.setShadowCaster(false);
+              built.setShadowReceiver(false);
+              renderable = built;
+              node.setRenderable(built);
+              building = false;
+            })
+        .exceptionally(
+            throwable -> {
+              building = false;
+              return null;
+            });
+  }
+
+  private void addVertex(float u, float v) {
+    vertices.add(
+        Vertex.builder()
+            .setPosition(Vector3.zero())
+            .setNormal(Vector3.back())
+            .setUvCoordinate(new Vertex.UvCoordinate(u, v))
+            .build());
+  }
+}
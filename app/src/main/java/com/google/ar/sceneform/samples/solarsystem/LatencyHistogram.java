@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+
+/**
+ * Histogram of durations in nanoseconds with fixed, logarithmically spaced buckets.
+ *
+ * <p>Every power of two from 1 microsecond up to about a minute is split into {@link
+ * #SUB_BUCKETS} buckets, so percentiles are accurate to within 12.5%. Shorter durations share the
+ * first bucket and longer ones the last. Recording only increments a counter and never allocates.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MIN_EXPONENT = 10;
+  private static final int MAX_EXPONENT = 36;
+  private static final int BUCKET_COUNT = 2 + (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long totalCount = 0;
+  private long maxNanos = 0;
+
+  public void record(long nanos) {
+    counts[bucketOf(nanos)]++;
+    totalCount++;
+    if (nanos > maxNanos) {
+      maxNanos = nanos;
+    }
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = 0;
+    }
+    totalCount = 0;
+    maxNanos = 0;
+  }
+
+  public long getCount() {
+    return totalCount;
+  }
+
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * Returns the upper bound of the bucket holding the given percentile, or 0 if nothing was
+   * recorded.
+   *
+   * @param percentile between 0 and 100
+   */
+  public long getPercentileNanos(double percentile) {
+    if (totalCount == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(totalCount * percentile / 100.0));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += counts[bucket];
+      if (seen >= target) {
+        return Math.min(upperBound(bucket), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  /** Appends one line per non-empty bucket: name, lower bound, upper bound and count. */
+  public void writeBuckets(String name, Appendable out) throws IOException {
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      if (counts[bucket] == 0) {
+        continue;
+      }
+      out.append(name)
+          .append(' ')
+          .append(Long.toString(lowerBound(bucket)))
+          .append(' ')
+          .append(Long.toString(upperBound(bucket)))
+          .append(' ')
+          .append(Long.toString(counts[bucket]))
+          .append('\n');
+    }
+  }
+
+  private static int bucketOf(long nanos) {
+    if (nanos < (1L << MIN_EXPONENT)) {
+      return 0;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKET_COUNT - 1;
+    }
+    int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long lowerBound(int bucket) {
+    if (bucket == 0) {
+      return 0;
+    }
+    int exponent = MIN_EXPONENT + (bucket - 1) / SUB_BUCKETS;
+    int subBucket = (bucket - 1) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  private static long upperBound(int bucket) {
+    if (bucket == BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return bucket == 0 ? 1L << MIN_EXPONENT : lowerBound(bucket + 1);
+  }
+}
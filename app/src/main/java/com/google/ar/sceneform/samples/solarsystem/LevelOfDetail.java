@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Picks between the detail variants of a model based on how large it appears on screen.
+ *
+ * <p>Level 0 is the full detail model, for example "Earth.sfb". Coarser levels are built by
+ * app/build.gradle next to it with a "_lod" suffix, for example "Earth_lod1.sfb".
+ */
+public final class LevelOfDetail {
+  public static final int LEVEL_COUNT = 3;
+  public static final int COARSEST = LEVEL_COUNT - 1;
+
+  // Smallest angular diameter, in degrees, at which level i is used. The apparent size is
+  // proportional to the projected size on screen for a given camera field of view.
+  private static final float[] MIN_ANGULAR_DIAMETER_DEGREES = {12.0f, 3.0f};
+
+  // A body has to grow or shrink by this factor past a boundary before switching, so bodies close
+  // to a boundary don't flip between variants every frame.
+  private static final float HYSTERESIS = 1.25f;
+
+  private static final String EXTENSION = ".sfb";
+
+  private LevelOfDetail() {}
+
+  /** Returns the asset name of a detail level of {@code model}. */
+  public static String variant(String model, int level) {
+    if (level == 0) {
+      return model;
+    }
+    String base =
+        model.endsWith(EXTENSION) ? model.substring(0, model.length() - EXTENSION.length()) : model;
+    return base + "_lod" + level + EXTENSION;
+  }
+
+  /**
+   * Returns the level to show for a body with the given apparent size.
+   *
+   * @param currentLevel the level currently shown
+   * @param angularDiameterDegrees the apparent diameter of the body from the camera
+   */
+  public static int select(int currentLevel, float angularDiameterDegrees) {
+    for (int level = 0; level < MIN_ANGULAR_DIAMETER_DEGREES.length; level++) {
+      float boundary = MIN_ANGULAR_DIAMETER_DEGREES[level];
+      boundary = currentLevel <= level ? boundary / HYSTERESIS : boundary * HYSTERESIS;
+      if (angularDiameterDegrees >= boundary) {
+        return level;
+      }
+    }
+    return COARSEST;
+  }
+
+  /** Returns the apparent diameter in degrees of a sphere seen from {@code distance} away. */
+  public static float angularDiameterDegrees(float radius, float distance) {
+    if (distance <= radius) {
+      return 180.0f;
+    }
+    return (float) Math.toDegrees(2.0 * Math.asin(radius / distance));
+  }
+}
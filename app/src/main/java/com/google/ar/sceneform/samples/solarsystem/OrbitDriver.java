@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Moves every body of the solar system once per frame.
+ *
+ * <p>Register a single instance with {@link Scene#addOnUpdateListener}. The transforms of all
+ * bodies are computed by a {@link SimulationLoop} in one loop and then written to the nodes through
+ * {@link BodyScene}, so no node needs its own animator or update hook. Between {@link #start} and
+ * {@link #stop}, the simulation runs on its own thread and each frame only copies its latest poses.
+ */
+public class OrbitDriver implements Scene.OnUpdateListener, BodyScene {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final SimulationLoop loop;
+
+  private Planet[] planets = new Planet[INITIAL_CAPACITY];
+  private Node[] visuals = new Node[INITIAL_CAPACITY];
+
+  private final ArrayList<AsteroidBelt> belts = new ArrayList<>();
+  private double beltDays = Double.NaN;
+
+  // Scratch objects used to push the transforms to the nodes without allocating.
+  private final Vector3 scratchVector = new Vector3();
+  private final Quaternion scratchRotation = new Quaternion();
+
+  public OrbitDriver(SolarSettingsStore settingsStore) {
+    loop = new SimulationLoop(settingsStore, this);
+  }
+
+  /**
+   * Adds a planet to the simulation and places it on its orbit.
+   *
+   * @param planet the planet, positioned relative to its parent
+   * @param orbitRadius displayed distance of the planet's semi-major axis, in meters
+   * @return the index of the planet in the driver
+   */
+  public int addBody(Planet planet, float orbitRadius) {
+    int index = loop.getBodyCount();
+    if (index >= planets.length) {
+      planets = Arrays.copyOf(planets, planets.length * 2);
+      visuals = Arrays.copyOf(visuals, visuals.length * 2);
+    }
+    RotatingNode visual = planet.getPlanetVisual();
+    planets[index] = planet;
+    visuals[index] = visual;
+    return loop.addBody(planet.orbitalElements, orbitRadius, visual.getDegreesPerSecond());
+  }
+
+  /** Takes a planet's positions from precomputed tables where they cover the simulation time. */
+  public void useEphemeris(int index, Ephemeris ephemeris, int ephemerisBody) {
+    loop.useEphemeris(index, ephemeris, ephemerisBody);
+  }
+
+  /** Sets the simulation used while gravity is enabled, see {@link SimulationLoop#setGravity}. */
+  public void setGravity(GravitySimulation gravity) {
+    loop.setGravity(gravity);
+  }
+
+  /**
+   * Adds a body to the gravity simulation, see {@link SimulationLoop#addGravityBody}.
+   *
+   * @param sceneBody the index {@link #addBody} returned for the planet, or -1
+   */
+  public int addGravityBody(double mass, int parent, OrbitalElements orbit, int sceneBody) {
+    return loop.addGravityBody(mass, parent, orbit, sceneBody);
+  }
+
+  /** Starts stepping the simulation on its own thread, see {@link SimulationLoop#start}. */
+  public void start() {
+    loop.start();
+  }
+
+  /** Stops the simulation thread, see {@link SimulationLoop#stop}. */
+  public void stop() {
+    loop.stop();
+  }
+
+  /** Adds a belt of small bodies that moves along with the planets. */
+  public void addBelt(AsteroidBelt belt) {
+    belts.add(belt);
+    belt.update(loop.getSimulationDays());
+    belt.setDistanceScale(loop.getDistanceScale());
+  }
+
+  public int getBodyCount() {
+    return loop.getBodyCount();
+  }
+
+  /** Simulation time, in days since J2000. */
+  public double getSimulationDays() {
+    return loop.getSimulationDays();
+  }
+
+  /** Shows every body at a date, in milliseconds since the Unix epoch, from the next frame. */
+  public void jumpToDate(long epochMillis) {
+    loop.jumpToDate(epochMillis);
+  }
+
+  /** Shows every body at a time, in days since J2000, from the next frame. */
+  public void jumpToDays(double days) {
+    loop.jumpToDays(days);
+  }
+
+  /** Sets the multiplier applied to every orbit radius, applied on the next frame. */
+  public void setDistanceScale(float distanceScale) {
+    loop.setDistanceScale(distanceScale);
+  }
+
+  /** Sets the world scale of a body, applied on the next frame. */
+  public void setBodyScale(int index, float scale) {
+    loop.setBodyScale(index, scale);
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    if (loop.getBodyCount() == 0 && belts.isEmpty()) {
+      return;
+    }
+    long startNanos = FrameStats.start();
+
+    boolean distanceScaleChanged = loop.update(frameTime.getDeltaSeconds());
+
+    // The belts only move when the clock does.
+    double simulationDays = loop.getSimulationDays();
+    boolean timeChanged = simulationDays != beltDays;
+    beltDays = simulationDays;
+    for (int i = 0; i < belts.size(); i++) {
+      AsteroidBelt belt = belts.get(i);
+      if (timeChanged) {
+        belt.update(simulationDays);
+      }
+      if (distanceScaleChanged) {
+        belt.setDistanceScale(loop.getDistanceScale());
+      }
+    }
+    FrameStats.stop(FrameStats.ORBITS, startNanos);
+  }
+
+  @Override
+  public void applyPosition(int body, float x, float y, float z) {
+    scratchVector.set(x, y, z);
+    planets[body].setLocalPosition(scratchVector);
+  }
+
+  @Override
+  public void applyRotation(int body, float x, float y, float z, float w) {
+    scratchRotation.set(x, y, z, w);
+    visuals[body].setLocalRotation(scratchRotation);
+  }
+
+  @Override
+  public void applyScale(int body, float scale) {
+    scratchVector.set(scale, scale, scale);
+    planets[body].setWorldScale(scratchVector);
+  }
+}
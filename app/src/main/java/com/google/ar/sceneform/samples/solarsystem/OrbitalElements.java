@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * Classical Keplerian elements of an orbit around a parent body, referenced to the J2000 epoch.
+ *
+ * <p>The rotation from the orbital plane into the ecliptic frame only depends on the angles, so it
+ * is computed once here instead of every time a position is evaluated.
+ */
+public class OrbitalElements {
+  private final double semiMajorAxisAu;
+  private final double eccentricity;
+  private final double inclinationDegrees;
+  private final double periodDays;
+
+  // Mean anomaly at the epoch and mean motion, in radians and radians per day.
+  final double meanAnomalyAtEpoch;
+  final double meanMotion;
+
+  // sqrt(1 - e^2), used to scale the minor axis.
+  final double minorAxisRatio;
+
+  // Unit vectors of the periapsis (P) and of the direction 90 degrees ahead of it (Q) in the
+  // ecliptic frame.
+  final double px;
+  final double py;
+  final double pz;
+  final double qx;
+  final double qy;
+  final double qz;
+
+  public OrbitalElements(
+      double semiMajorAxisAu,
+      double eccentricity,
+      double inclinationDegrees,
+      double ascendingNodeDegrees,
+      double argumentOfPeriapsisDegrees,
+      double meanAnomalyAtEpochDegrees,
+      double periodDays) {
+    if (eccentricity < 0.0 || eccentricity >= 1.0) {
+      throw new IllegalArgumentException("Only elliptic orbits are supported: e=" + eccentricity);
+    }
+    if (periodDays <= 0.0) {
+      throw new IllegalArgumentException("Orbital period must be positive: " + periodDays);
+    }
+    this.semiMajorAxisAu = semiMajorAxisAu;
+    this.eccentricity = eccentricity;
+    this.inclinationDegrees = inclinationDegrees;
+    this.periodDays = periodDays;
+    this.meanAnomalyAtEpoch = Math.toRadians(meanAnomalyAtEpochDegrees);
+    this.meanMotion = 2.0 * Math.PI / periodDays;
+    this.minorAxisRatio = Math.sqrt(1.0 - eccentricity * eccentricity);
+
+    double cosNode = Math.cos(Math.toRadians(ascendingNodeDegrees));
+    double sinNode = Math.sin(Math.toRadians(ascendingNodeDegrees));
+    double cosPeri = Math.cos(Math.toRadians(argumentOfPeriapsisDegrees));
+    double sinPeri = Math.sin(Math.toRadians(argumentOfPeriapsisDegrees));
+    double cosIncl = Math.cos(Math.toRadians(inclinationDegrees));
+    double sinIncl = Math.sin(Math.toRadians(inclinationDegrees));
+
+    px = cosNode * cosPeri - sinNode * sinPeri * cosIncl;
+    py = sinNode * cosPeri + cosNode * sinPeri * cosIncl;
+    pz = sinPeri * sinIncl;
+    qx = -cosNode * sinPeri - sinNode * cosPeri * cosIncl;
+    qy = -sinNode * sinPeri + cosNode * cosPeri * cosIncl;
+    qz = cosPeri * sinIncl;
+  }
+
+  public double getSemiMajorAxisAu() {
+    return semiMajorAxisAu;
+  }
+
+  public double getEccentricity() {
+    return eccentricity;
+  }
+
+  public double getInclinationDegrees() {
+    return inclinationDegrees;
+  }
+
+  public double getPeriodDays() {
+    return periodDays;
+  }
+}
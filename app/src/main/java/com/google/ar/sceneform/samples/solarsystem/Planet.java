@@ -17,116 +17,168 @@ package com.google.ar.sceneform.samples.solarsystem;
 
 import android.content.Context;
 import android.view.MotionEvent;
-import android.widget.TextView;
 import com.google.ar.sceneform.FrameTime;
-import com.google.ar.sceneform.HitTestResult;
 import com.google.ar.sceneform.Node;
-import com.google.ar.sceneform.math.Quaternion;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.ModelRenderable;
-import com.google.ar.sceneform.rendering.ViewRenderable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Node that represents a planet.
  *
- * <p>The planet creates two child nodes when it is activated:
+ * <p>The planet has two child nodes:
  *
  * <ul>
  *   <li>The visual of the planet, rotates along it's own axis and renders the planet.
- *   <li>An info card, renders an Android View that displays the name of the planerendt. This can be
- *       toggled on and off.
+ *   <li>The anchor of the planet's label, which a {@link LabelRenderer} draws above the planet
+ *       together with the labels of every other body. Tapping the planet toggles it on and off.
  * </ul>
  *
  * The planet is rendered by a child instead of this node so that the spinning of the planet doesn't
- * make the info card spin as well.
+ * move the label as well.
  */
-public class Planet extends Node implements Node.OnTapListener {
+public class Planet extends Node implements BodyPicker.OnBodyTapListener {
   private final String planetName;
+  private final String planetInfo;
   public final float planetScale;
-  private final ModelRenderable planetRenderable;
-  private final SolarSettings solarSettings;
+  private final String planetModel;
+  private final RenderableRepository renderables;
+  private final LabelRenderer labels;
   public float myScale;
 
-  // Can set the scale of infoCard -> to make the
-  private Node infoCard;
-  private RotatingNode planetVisual;
+  // Follows the planet so its label stays above it, and the label's index in labels.
+  private Node labelAnchor;
+  private int label = -1;
+  private final RotatingNode planetVisual;
   private final Context context;
 
-  private static final float INFO_CARD_Y_POS_COEFF = 1.0f;
+  private static final float LABEL_Y_POS_COEFF = 1.0f;
+
+  // Approximate radius of the planet models before the visual's scale is applied.
+  static final float MODEL_RADIUS = 0.5f;
+
+  // Detail level that should be shown, see LevelOfDetail. Planets start coarse and pick a finer
+  // variant once they are large enough on screen.
+  private int requestedLevel = LevelOfDetail.COARSEST;
+  private boolean hasLevelsOfDetail = true;
 
   public Node parent;
 
   public float fromParent;
 
+  public final OrbitalElements orbitalElements;
+
   public Planet(
       Context context,
       String planetName,
+      String planetInfo,
       float planetScale,
-      ModelRenderable planetRenderable,
-      SolarSettings solarSettings, Node parent, float fromParent) {
+      String planetModel,
+      RenderableRepository renderables,
+      LabelRenderer labels,
+      Node parent, float fromParent,
+      OrbitalElements orbitalElements) {
     this.fromParent = fromParent;
+    this.orbitalElements = orbitalElements;
     this.context = context;
     this.planetName = planetName;
+    this.planetInfo = planetInfo;
     this.planetScale = planetScale;
-    this.planetRenderable = planetRenderable;
-    this.solarSettings = solarSettings;
+    this.planetModel = planetModel;
+    this.renderables = renderables;
+    this.labels = labels;
     this.myScale = planetScale;
     this.parent = parent;
-    setOnTapListener(this);
+
+    // The visual is created up front so OrbitDriver can spin it from the first frame.
+    planetVisual = new RotatingNode();
+    planetVisual.setParent(this);
+    planetVisual.setLocalScale(new Vector3(planetScale, planetScale, planetScale));
+  }
+
+  RotatingNode getPlanetVisual() {
+    return planetVisual;
   }
 
   @Override
-  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
   public void onActivate() {
 
     if (getScene() == null) {
       throw new IllegalStateException("Scene is null!");
     }
 
-    if (infoCard == null) {
-      infoCard = new Node();
-      infoCard.setParent(this);
-      infoCard.setEnabled(false);
-      infoCard.setLocalPosition(new Vector3(0.0f, planetScale * INFO_CARD_Y_POS_COEFF, 0.0f));
+    showLevel(requestedLevel);
+
+    if (labelAnchor == null) {
+      labelAnchor = new Node();
+      labelAnchor.setParent(this);
+      labelAnchor.setLocalPosition(new Vector3(0.0f, planetScale * LABEL_Y_POS_COEFF, 0.0f));
+      label = labels.addLabel(
+          labelAnchor, planetInfo.isEmpty() ? planetName : planetName + "\n" + planetInfo);
+    }
+  }
 
-      ViewRenderable.builder()
-          .setView(context, R.layout.planet_card_view)
-          .build()
+  /**
+   * Shows a detail level of the planet's model. The model is loaded on first use and may have been
+   * evicted since it was last shown, so the previous variant or a placeholder stays visible until
+   * it is ready.
+   */
+  @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
+  private void showLevel(int level) {
+    requestedLevel = level;
+    CompletableFuture<ModelRenderable> modelStage =
+        renderables.get(LevelOfDetail.variant(planetModel, level));
+    if (!modelStage.isDone() && planetVisual.getRenderable() == null) {
+      renderables
+          .getPlaceholder()
           .thenAccept(
-              (renderable) -> {
-                infoCard.setRenderable(renderable);
-                TextView textView = (TextView) renderable.getView();
-                textView.setText(planetName);
-              })
-          .exceptionally(
-              (throwable) -> {
-                throw new AssertionError("Could not load plane card view.", throwable);
+              (placeholder) -> {
+                if (isActive() && !modelStage.isDone() && planetVisual.getRenderable() == null) {
+                  planetVisual.setRenderable(placeholder);
+                }
               });
     }
+    modelStage
+        .thenAccept(
+            (renderable) -> {
+              // The planet may have been removed from the scene or switched to another level while
+              // the model was loading.
+              if (isActive() && requestedLevel == level) {
+                planetVisual.setRenderable(renderable);
+              }
+            })
+        .exceptionally(
+            (throwable) -> {
+              if (level != 0) {
+                // The variant isn't available, use the full detail model from now on.
+                hasLevelsOfDetail = false;
+                if (isActive() && requestedLevel == level) {
+                  showLevel(0);
+                }
+              } else {
+                DemoUtils.displayError(context, "Unable to load " + planetModel, throwable);
+              }
+              return null;
+            });
+  }
 
-    if (planetVisual == null) {
-      planetVisual = new RotatingNode(solarSettings, false);
-      planetVisual.setParent(this);
-      planetVisual.setRenderable(planetRenderable);
-      planetVisual.setLocalScale(new Vector3(planetScale, planetScale, planetScale));
-    }
+  @Override
+  public void onDeactivate() {
+    // Release the model so the repository can reclaim it while the planet isn't shown.
+    planetVisual.setRenderable(null);
   }
 
   @Override
-  public void onTap(HitTestResult hitTestResult, MotionEvent motionEvent) {
-    if (infoCard == null) {
+  public void onTap(MotionEvent motionEvent) {
+    if (label < 0) {
       return;
     }
 
-    infoCard.setEnabled(!infoCard.isEnabled());
+    labels.setVisible(label, !labels.isVisible(label));
   }
 
   @Override
   public void onUpdate(FrameTime frameTime) {
-    if (infoCard == null) {
-      return;
-    }
-
     // Typically, getScene() will never return null because onUpdate() is only called when the node
     // is in the scene.
     // However, if onUpdate is called explicitly or if the node is removed from the scene on a
@@ -135,11 +187,32 @@ public class Planet extends Node implements Node.OnTapListener {
       return;
     }
 
-    infoCard.setLocalPosition(new Vector3(0.0f, planetScale * INFO_CARD_Y_POS_COEFF, 0.0f));
-    Vector3 cameraPosition = getScene().getCamera().getWorldPosition();
-    Vector3 cardPosition = infoCard.getWorldPosition();
-    Vector3 direction = Vector3.subtract(cameraPosition, cardPosition);
-    Quaternion lookRotation = Quaternion.lookRotation(direction, Vector3.up());
-    infoCard.setWorldRotation(lookRotation);
+    long startNanos = FrameStats.start();
+    updateLevelOfDetail();
+    FrameStats.stop(FrameStats.PLANETS, startNanos);
+  }
+
+  /** Switches to the detail level that matches the planet's apparent size. */
+  private void updateLevelOfDetail() {
+    if (!hasLevelsOfDetail) {
+      return;
+    }
+
+    float[] camera = getScene().getCamera().getWorldModelMatrix().data;
+    float[] visual = planetVisual.getWorldModelMatrix().data;
+    float dx = camera[12] - visual[12];
+    float dy = camera[13] - visual[13];
+    float dz = camera[14] - visual[14];
+    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    float worldScale =
+        (float) Math.sqrt(visual[0] * visual[0] + visual[1] * visual[1] + visual[2] * visual[2]);
+
+    int level =
+        LevelOfDetail.select(
+            requestedLevel,
+            LevelOfDetail.angularDiameterDegrees(MODEL_RADIUS * worldScale, distance));
+    if (level != requestedLevel) {
+      showLevel(level);
+    }
   }
 }
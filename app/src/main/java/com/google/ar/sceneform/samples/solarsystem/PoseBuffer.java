@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two {@link Frame}s of body poses, handed from the simulation thread to the render thread without
+ * locks.
+ *
+ * <p>The writer always fills the frame the reader isn't looking at and then publishes it as the
+ * latest one. The reader always takes the latest published frame. Every frame holds the previous
+ * poses as well as the current ones, so the reader can interpolate between them from a single
+ * frame. Neither side ever waits: if the reader still holds the only frame the writer could fill,
+ * {@link #beginWrite} returns null and the writer publishes its next step instead.
+ */
+final class PoseBuffer {
+  /** Poses of every body at two consecutive published simulation steps. */
+  static final class Frame {
+    // Counts the frames the writer published, so the reader can tell a new frame from an old one.
+    long version;
+    // Counts the jumps the writer applied before this step, see SimulationLoop#jumpToDays.
+    int jumps;
+    int bodyCount;
+    // Positions and rotations of the previously published step and of this one, see BodySimulation.
+    float[] previousPositions = new float[0];
+    float[] previousRotations = new float[0];
+    float[] positions = new float[0];
+    float[] rotations = new float[0];
+    double previousDays;
+    double days;
+    // When the steps were due, on the System.nanoTime() time line.
+    long previousNanos;
+    long nanos;
+
+    /** Makes room for {@code bodyCount} bodies, keeping the existing values. */
+    void ensureCapacity(int bodyCount) {
+      if (positions.length >= bodyCount * 3) {
+        return;
+      }
+      previousPositions = Arrays.copyOf(previousPositions, bodyCount * 3);
+      previousRotations = Arrays.copyOf(previousRotations, bodyCount * 4);
+      positions = Arrays.copyOf(positions, bodyCount * 3);
+      rotations = Arrays.copyOf(rotations, bodyCount * 4);
+    }
+
+    /**
+     * How far {@code nanos} lies between the two steps, from 0 at the previous step to 1 at this
+     * one. Times outside of them are clamped, so poses are never extrapolated.
+     */
+    float interpolation(long nanos) {
+      long span = this.nanos - previousNanos;
+      if (span <= 0) {
+        return 1.0f;
+      }
+      return Math.max(0.0f, Math.min(1.0f, (float) (nanos - previousNanos) / span));
+    }
+  }
+
+  // Bit 0 is the index of the latest frame. READING is set while the reader holds a frame, whose
+  // index is in HELD_FRAME. PUBLISHED is set from the first publish on.
+  private static final int LATEST_FRAME = 1;
+  private static final int READING = 2;
+  private static final int HELD_FRAME = 4;
+  private static final int PUBLISHED = 8;
+
+  private final Frame[] frames = {new Frame(), new Frame()};
+  private final AtomicInteger state = new AtomicInteger();
+  // Only touched by the writer.
+  private int writing = -1;
+
+  /**
+   * Returns the frame the writer may fill, or null if the reader holds it. Must be followed by
+   * {@link #publish} before the next call.
+   */
+  Frame beginWrite() {
+    int current = state.get();
+    int target = 1 - (current & LATEST_FRAME);
+    // The reader only ever takes the latest frame, so it can't start reading the target now.
+    if ((current & READING) != 0 && heldFrame(current) == target) {
+      return null;
+    }
+    writing = target;
+    return frames[target];
+  }
+
+  /** Makes the frame returned by {@link #beginWrite} the latest one. */
+  void publish() {
+    while (true) {
+      int current = state.get();
+      if (state.compareAndSet(current, (current & ~LATEST_FRAME) | writing | PUBLISHED)) {
+        break;
+      }
+    }
+    writing = -1;
+  }
+
+  /**
+   * Returns the latest published frame, or null if nothing was published yet. The writer won't
+   * touch the frame until {@link #release}, which must be called before the next {@code acquire}.
+   */
+  Frame acquire() {
+    while (true) {
+      int current = state.get();
+      if ((current & PUBLISHED) == 0) {
+        return null;
+      }
+      int latest = current & LATEST_FRAME;
+      if (state.compareAndSet(current, current | READING | (latest == 1 ? HELD_FRAME : 0))) {
+        return frames[latest];
+      }
+    }
+  }
+
+  /** Hands the frame returned by {@link #acquire} back to the writer. */
+  void release() {
+    while (true) {
+      int current = state.get();
+      if (state.compareAndSet(current, current & ~(READING | HELD_FRAME))) {
+        return;
+      }
+    }
+  }
+
+  private static int heldFrame(int state) {
+    return (state & HELD_FRAME) != 0 ? 1 : 0;
+  }
+}
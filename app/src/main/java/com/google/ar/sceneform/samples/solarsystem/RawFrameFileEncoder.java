@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes frames to a file uncompressed, for exercising a {@link RecordingPipeline} without a video
+ * encoder.
+ *
+ * <p>Each frame is a little-endian header of width, height (both ints) and timestamp in
+ * nanoseconds (a long), followed by its RGBA pixels. An existing file, like a preallocated segment
+ * from {@link RecordingStorage}, is overwritten from the start and cut off after the last frame.
+ */
+public class RawFrameFileEncoder implements FrameEncoder {
+  private static final int HEADER_BYTES = 16;
+
+  private final File file;
+  private final ByteBuffer header =
+      ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+  private final ByteBuffer[] frameParts = new ByteBuffer[2];
+  private FileChannel channel;
+  private long bytesWritten = 0;
+
+  public RawFrameFileEncoder(File file) {
+    this.file = file;
+  }
+
+  @Override
+  public void start(int width, int height) throws IOException {
+    channel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+  }
+
+  @Override
+  public void encode(FrameBuffer frame) throws IOException {
+    header.clear();
+    header.putInt(frame.getWidth()).putInt(frame.getHeight()).putLong(frame.getTimestampNanos());
+    header.flip();
+    ByteBuffer pixels = frame.getPixels();
+    frameParts[0] = header;
+    frameParts[1] = pixels;
+    while (header.hasRemaining() || pixels.hasRemaining()) {
+      bytesWritten += channel.write(frameParts);
+    }
+    frameParts[1] = null;
+  }
+
+  @Override
+  public void stop() throws IOException {
+    if (channel != null) {
+      try {
+        channel.truncate(bytesWritten);
+      } finally {
+        channel.close();
+        channel = null;
+      }
+    }
+  }
+
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+}
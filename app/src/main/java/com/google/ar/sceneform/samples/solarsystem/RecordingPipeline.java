@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves captured frames from the capturing thread to a {@link FrameEncoder} on a dedicated thread.
+ *
+ * <p>Frames live in a fixed pool of {@link FrameBuffer}s. The capturing side never waits: when the
+ * encoder falls behind it first asks for frames at half the size (see {@link
+ * #getCaptureDivisor}) and, once every buffer is in use, {@link #acquire} returns null and the
+ * frame is dropped.
+ *
+ * <p>Usage on the capturing side: {@link #acquire} a buffer, fill it with {@link
+ * FrameBuffer#prepare} and {@link #submit} it, or {@link #release} it if capturing failed.
+ */
+public class RecordingPipeline {
+  /** Notified on the encoder thread once the recording is finished. */
+  public interface OnFinishedListener {
+    /** @param error the first error that stopped or ended the recording, or null */
+    void onFinished(Exception error);
+  }
+
+  private final FrameEncoder encoder;
+  private final int width;
+  private final int height;
+  private final int bufferCount;
+  private final ArrayBlockingQueue<FrameBuffer> freeBuffers;
+  // One slot more than there are buffers, so the end marker always fits.
+  private final ArrayBlockingQueue<FrameBuffer> queuedFrames;
+  private final FrameBuffer endOfStream = new FrameBuffer(0, 0);
+  private final Thread encoderThread;
+  private OnFinishedListener onFinishedListener;
+
+  private volatile boolean accepting = false;
+  private volatile boolean downscaling = false;
+  private volatile Exception error;
+  private final AtomicInteger encodedFrames = new AtomicInteger();
+  private final AtomicInteger droppedFrames = new AtomicInteger();
+  private final AtomicInteger downscaledFrames = new AtomicInteger();
+
+  /**
+   * @param width the width of the recording, and of full size frames
+   * @param height the height of the recording, and of full size frames
+   * @param bufferCount how many frames can be waiting for the encoder at once
+   */
+  public RecordingPipeline(FrameEncoder encoder, int width, int height, int bufferCount) {
+    if (bufferCount < 2) {
+      throw new IllegalArgumentException("At least two buffers are needed, got " + bufferCount);
+    }
+    this.encoder = encoder;
+    this.width = width;
+    this.height = height;
+    this.bufferCount = bufferCount;
+    freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+    queuedFrames = new ArrayBlockingQueue<>(bufferCount + 1);
+    for (int i = 0; i < bufferCount; i++) {
+      freeBuffers.add(new FrameBuffer(width, height));
+    }
+    encoderThread = new Thread(this::runEncoder, "RecordingEncoder");
+  }
+
+  public void setOnFinishedListener(OnFinishedListener onFinishedListener) {
+    this.onFinishedListener = onFinishedListener;
+  }
+
+  /** Starts the encoder thread. Frames are accepted from now on. */
+  public void start() {
+    accepting = true;
+    encoderThread.start();
+  }
+
+  /**
+   * Stops accepting frames. The frames already submitted are still encoded before the encoder is
+   * stopped. Doesn't wait for that to happen, see {@link #awaitFinished}.
+   */
+  public void stop() {
+    if (!accepting) {
+      return;
+    }
+    accepting = false;
+    queuedFrames.offer(endOfStream);
+  }
+
+  /** Waits for the encoder thread to finish, returns false if it didn't within the timeout. */
+  public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+    encoderThread.join(unit.toMillis(timeout));
+    return !encoderThread.isAlive();
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns by how much the next frame should be scaled down: 1 normally, 2 while the encoder is
+   * falling behind. Downscaling starts once half the buffers are waiting and stops once the
+   * encoder has caught up completely.
+   */
+  public int getCaptureDivisor() {
+    int queued = queuedFrames.size();
+    if (queued >= bufferCount / 2) {
+      downscaling = true;
+    } else if (queued == 0) {
+      downscaling = false;
+    }
+    return downscaling ? 2 : 1;
+  }
+
+  /** Returns a free buffer to capture into, or null if the frame has to be dropped. */
+  public FrameBuffer acquire() {
+    FrameBuffer buffer = accepting ? freeBuffers.poll() : null;
+    if (buffer == null) {
+      droppedFrames.incrementAndGet();
+    }
+    return buffer;
+  }
+
+  /** Queues a filled buffer for encoding. */
+  public void submit(FrameBuffer buffer) {
+    if (!accepting) {
+      freeBuffers.offer(buffer);
+      droppedFrames.incrementAndGet();
+      return;
+    }
+    if (buffer.getWidth() < width || buffer.getHeight() < height) {
+      downscaledFrames.incrementAndGet();
+    }
+    queuedFrames.offer(buffer);
+  }
+
+  /** Returns a buffer that wasn't filled after all. */
+  public void release(FrameBuffer buffer) {
+    freeBuffers.offer(buffer);
+    droppedFrames.incrementAndGet();
+  }
+
+  public int getEncodedFrames() {
+    return encodedFrames.get();
+  }
+
+  public int getDroppedFrames() {
+    return droppedFrames.get();
+  }
+
+  public int getDownscaledFrames() {
+    return downscaledFrames.get();
+  }
+
+  /** Returns the error that stopped the recording, or null. */
+  public Exception getError() {
+    return error;
+  }
+
+  private void runEncoder() {
+    try {
+      encoder.start(width, height);
+      while (true) {
+        FrameBuffer frame = queuedFrames.take();
+        if (frame == endOfStream) {
+          break;
+        }
+        try {
+          encoder.encode(frame);
+          encodedFrames.incrementAndGet();
+        } finally {
+          freeBuffers.offer(frame);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      fail(e);
+    } catch (InterruptedException e) {
+      fail(e);
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      encoder.stop();
+    } catch (IOException | RuntimeException e) {
+      if (error == null) {
+        error = e;
+      }
+    }
+    if (onFinishedListener != null) {
+      onFinishedListener.onFinished(error);
+    }
+  }
+
+  private void fail(Exception e) {
+    error = e;
+    accepting = false;
+    // Nothing will be encoded any more, hand the queued buffers back.
+    FrameBuffer frame;
+    while ((frame = queuedFrames.poll()) != null) {
+      if (frame != endOfStream) {
+        freeBuffers.offer(frame);
+      }
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps recording segments in a directory within a disk quota.
+ *
+ * <p>All file system work happens on a background thread: creating the directory, listing the
+ * segments left by earlier sessions, deleting the oldest segments to make room and preallocating
+ * new ones. Segment files are filled with zeros up to their expected size when they are reserved,
+ * so running out of space shows up before recording into them rather than halfway through, and
+ * encoders should cut off the unused tail when they finish.
+ *
+ * <p>Segments are named {@code <prefix>_<date>_<sequence><extension>}, which sorts oldest first.
+ */
+public class RecordingStorage {
+  private static final int FILL_CHUNK_BYTES = 64 * 1024;
+  private static final long IDLE_THREAD_SECONDS = 5;
+
+  private final File directory;
+  private final String prefix;
+  private final String extension;
+  private final long quotaBytes;
+  private final ThreadPoolExecutor executor;
+
+  // Only used on the executor thread. Segments are ordered oldest first, and null until the
+  // directory has been listed.
+  private ArrayDeque<Segment> segments;
+  private long usedBytes = 0;
+  private int sequence = 0;
+  private final ByteBuffer zeros = ByteBuffer.allocateDirect(FILL_CHUNK_BYTES);
+  private final SimpleDateFormat dateFormat =
+      new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.US);
+
+  private static class Segment {
+    final File file;
+    long bytes;
+    // Open segments are being written or about to be, and are never evicted.
+    boolean open;
+
+    Segment(File file, long bytes, boolean open) {
+      this.file = file;
+      this.bytes = bytes;
+      this.open = open;
+    }
+  }
+
+  /**
+   * @param directory where to keep the segments, created when the first segment is reserved
+   * @param prefix the start of the segment file names
+   * @param extension the end of the segment file names, including the dot
+   * @param quotaBytes how much all segments with this prefix and extension may take up together
+   */
+  public RecordingStorage(File directory, String prefix, String extension, long quotaBytes) {
+    this.directory = directory;
+    this.prefix = prefix;
+    this.extension = extension;
+    this.quotaBytes = quotaBytes;
+    // A single thread, which exits while there is nothing to do so the storage needs no shutdown.
+    executor =
+        new ThreadPoolExecutor(
+            1,
+            1,
+            IDLE_THREAD_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "RecordingStorage");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Creates a new segment file of {@code bytes} bytes, deleting the oldest finished segments as far
+   * as needed to stay within the quota and the free space of the disk. Completes exceptionally with
+   * an {@link IOException} if there isn't enough room even then.
+   *
+   * <p>The segment counts as open until it's passed to {@link #finishSegment} or {@link
+   * #discardSegment}.
+   */
+  public CompletableFuture<File> reserveSegment(long bytes) {
+    CompletableFuture<File> result = new CompletableFuture<>();
+    executor.execute(
+        () -> {
+          try {
+            result.complete(reserve(bytes));
+          } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return result;
+  }
+
+  /** Records the final size of a segment that has been written, making it eligible for eviction. */
+  public void finishSegment(File file) {
+    executor.execute(
+        () -> {
+          Segment segment = find(file);
+          if (segment != null) {
+            usedBytes += file.length() - segment.bytes;
+            segment.bytes = file.length();
+            segment.open = false;
+          }
+        });
+  }
+
+  /** Deletes a reserved segment that was never written. */
+  public void discardSegment(File file) {
+    executor.execute(
+        () -> {
+          Segment segment = find(file);
+          if (segment != null) {
+            segments.remove(segment);
+            usedBytes -= segment.bytes;
+          }
+          file.delete();
+        });
+  }
+
+  private File reserve(long bytes) throws IOException {
+    if (bytes > quotaBytes) {
+      throw new IOException(
+          "Segments of " + bytes + " bytes don't fit in a quota of " + quotaBytes + " bytes");
+    }
+    if (segments == null) {
+      listSegments();
+    }
+
+    Iterator<Segment> oldestFirst = segments.iterator();
+    while (usedBytes + bytes > quotaBytes || directory.getUsableSpace() < bytes) {
+      Segment segment = oldestFirst.hasNext() ? oldestFirst.next() : null;
+      if (segment == null) {
+        throw new IOException("Not enough space in " + directory + " for another segment");
+      }
+      if (!segment.open && segment.file.delete()) {
+        oldestFirst.remove();
+        usedBytes -= segment.bytes;
+      }
+    }
+
+    File file = nextFile();
+    Segment segment = new Segment(file, bytes, true);
+    segments.add(segment);
+    usedBytes += bytes;
+    try {
+      preallocate(file, bytes);
+    } catch (IOException e) {
+      segments.remove(segment);
+      usedBytes -= bytes;
+      file.delete();
+      throw e;
+    }
+    return file;
+  }
+
+  private void listSegments() throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create " + directory);
+    }
+    File[] files =
+        directory.listFiles(
+            file ->
+                file.isFile()
+                    && file.getName().startsWith(prefix)
+                    && file.getName().endsWith(extension));
+    if (files == null) {
+      throw new IOException("Unable to list " + directory);
+    }
+    Arrays.sort(files);
+    segments = new ArrayDeque<>(files.length + 2);
+    for (File file : files) {
+      long length = file.length();
+      segments.add(new Segment(file, length, false));
+      usedBytes += length;
+    }
+  }
+
+  private File nextFile() {
+    String date = dateFormat.format(new Date());
+    File file;
+    do {
+      String name = String.format(Locale.US, "%s_%s_%04d%s", prefix, date, sequence++, extension);
+      file = new File(directory, name);
+    } while (file.exists());
+    return file;
+  }
+
+  private void preallocate(File file, long bytes) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      long position = 0;
+      while (position < bytes) {
+        zeros.clear();
+        zeros.limit((int) Math.min(zeros.capacity(), bytes - position));
+        position += channel.write(zeros, position);
+      }
+    }
+  }
+
+  private Segment find(File file) {
+    if (segments == null) {
+      return null;
+    }
+    for (Segment segment : segments) {
+      if (segment.file.equals(file)) {
+        return segment;
+      }
+    }
+    return null;
+  }
+}
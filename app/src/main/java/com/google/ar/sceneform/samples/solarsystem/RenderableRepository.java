@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Color;
+import com.google.ar.sceneform.rendering.MaterialFactory;
+import com.google.ar.sceneform.rendering.ModelRenderable;
+import com.google.ar.sceneform.rendering.ShapeFactory;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads model renderables on first use and keeps them in a cache with a memory budget.
+ *
+ * <p>Loads are started in request order, with at most {@link #MAX_CONCURRENT_LOADS} models being
+ * decoded at once so that the first requests aren't slowed down by the ones behind them.
+ *
+ * <p>When the loaded models exceed the budget, the least recently requested ones are dropped from
+ * the cache. Nodes still showing a dropped model keep it alive until they release it, and the next
+ * request for it loads it again. Prefetched models are kept until they are first requested with
+ * {@link #get}, otherwise the prefetch would be undone before it paid off. The size of a model is
+ * estimated from the size of its asset.
+ *
+ * <p>All methods must be called on the UI thread.
+ */
+@SuppressWarnings("AndroidApiChecker") // CompletableFuture requires api level 24
+public class RenderableRepository {
+  private static final int MAX_CONCURRENT_LOADS = 2;
+
+  // Used when the size of an asset can't be determined, for example because it is compressed.
+  private static final long DEFAULT_MODEL_BYTES = 4L * 1024 * 1024;
+
+  private static final float PLACEHOLDER_RADIUS = 0.5f;
+
+  private static class Entry {
+    final String model;
+    final CompletableFuture<ModelRenderable> future = new CompletableFuture<>();
+    final long bytes;
+    // Set while a prefetched model waits for its first request, which exempts it from eviction.
+    boolean pinned = false;
+
+    Entry(String model, long bytes) {
+      this.model = model;
+      this.bytes = bytes;
+    }
+  }
+
+  private final Context context;
+  private final long budgetBytes;
+
+  // Iterates from least to most recently requested.
+  private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private long cachedBytes = 0;
+
+  // Requested models that haven't started loading yet, in request order.
+  private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+  private int activeLoads = 0;
+
+  private CompletableFuture<ModelRenderable> placeholder;
+
+  public RenderableRepository(Context context, long budgetBytes) {
+    this.context = context.getApplicationContext();
+    this.budgetBytes = budgetBytes;
+  }
+
+  /** Returns the model with the given asset name, loading it if it isn't cached. */
+  public CompletableFuture<ModelRenderable> get(String model) {
+    Entry entry = cache.get(model);
+    if (entry == null) {
+      entry = load(model);
+    }
+    entry.pinned = false;
+    return entry.future;
+  }
+
+  /**
+   * Queues every model in {@code models}, in order, that isn't cached yet. They stay cached at
+   * least until they are requested with {@link #get}.
+   */
+  public void prefetch(List<String> models) {
+    for (int i = 0; i < models.size(); i++) {
+      String model = models.get(i);
+      if (cache.get(model) == null) {
+        load(model).pinned = true;
+      }
+    }
+  }
+
+  /**
+   * Returns a plain sphere that can be shown while a model is loading. It is built once and shared
+   * by every caller.
+   */
+  public CompletableFuture<ModelRenderable> getPlaceholder() {
+    if (placeholder == null) {
+      placeholder =
+          MaterialFactory.makeOpaqueWithColor(context, new Color(0.5f, 0.5f, 0.5f))
+              .thenApply(
+                  material -> {
+                    ModelRenderable sphere =
+                        ShapeFactory.makeSphere(PLACEHOLDER_RADIUS, Vector3.zero(), material);
+                    sphere.setCollisionShape(null);
+                    return sphere;
+                  });
+    }
+    return placeholder;
+  }
+
+  public long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /** Adds a cache entry for a model and queues its load. */
+  private Entry load(String model) {
+    Entry entry = new Entry(model, estimateBytes(model));
+    cache.put(model, entry);
+    cachedBytes += entry.bytes;
+    pending.addLast(entry);
+
+    startPendingLoads();
+    trimToBudget();
+    return entry;
+  }
+
+  private void startPendingLoads() {
+    while (activeLoads < MAX_CONCURRENT_LOADS && !pending.isEmpty()) {
+      Entry entry = pending.pollFirst();
+      activeLoads++;
+      long startNanos = FrameStats.start();
+      ModelRenderable.builder()
+          .setSource(context, Uri.parse(entry.model))
+          .build()
+          .whenComplete(
+              (renderable, throwable) -> {
+                activeLoads--;
+                FrameStats.record(FrameStats.ASSET_LOADS, System.nanoTime() - startNanos);
+                if (throwable != null) {
+                  // Don't keep failed loads around so the next request tries again.
+                  remove(entry);
+                  entry.future.completeExceptionally(throwable);
+                } else {
+                  // Bodies are picked through BodyPicker, so Sceneform doesn't need to hit test them.
+                  renderable.setCollisionShape(null);
+                  entry.future.complete(renderable);
+                }
+                startPendingLoads();
+                trimToBudget();
+              });
+    }
+  }
+
+  private void remove(Entry entry) {
+    if (cache.remove(entry.model, entry)) {
+      cachedBytes -= entry.bytes;
+    }
+  }
+
+  /**
+   * Evicts least recently requested models that finished loading, always keeping the most recent
+   * one. Models that are still queued or loading have callers waiting for them and are kept, as are
+   * prefetched models that were never requested.
+   */
+  private void trimToBudget() {
+    Iterator<Map.Entry<String, Entry>> iterator = cache.entrySet().iterator();
+    int remaining = cache.size();
+    while (cachedBytes > budgetBytes && remaining > 1 && iterator.hasNext()) {
+      Entry entry = iterator.next().getValue();
+      remaining--;
+      if (entry.future.isDone() && !entry.pinned) {
+        iterator.remove();
+        cachedBytes -= entry.bytes;
+      }
+    }
+  }
+
+  private long estimateBytes(String model) {
+    try (AssetFileDescriptor descriptor = context.getAssets().openFd(model)) {
+      return descriptor.getLength();
+    } catch (IOException e) {
+      return DEFAULT_MODEL_BYTES;
+    }
+  }
+}
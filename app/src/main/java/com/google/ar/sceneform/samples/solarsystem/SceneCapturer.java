@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.PixelCopy;
+import com.google.ar.sceneform.ArSceneView;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Scene;
+
+/**
+ * Captures frames of the AR scene into a {@link RecordingPipeline}.
+ *
+ * <p>Register with {@link Scene#addOnUpdateListener} while recording. Frames are copied out of the
+ * view with {@link PixelCopy}, which scales them to the requested size and calls back on a capture
+ * thread, so the render thread never waits for a copy or for the encoder. At most one copy is in
+ * flight; frames that come up while one is, or while the pipeline has no free buffer, are skipped.
+ */
+public class SceneCapturer implements Scene.OnUpdateListener {
+  private final ArSceneView sceneView;
+  private final RecordingPipeline pipeline;
+  private final long frameIntervalNanos;
+  private final HandlerThread captureThread = new HandlerThread("SceneCapture");
+  private final Handler captureHandler;
+
+  // One bitmap per capture size, so the copy never allocates once recording is under way.
+  private Bitmap fullSizeBitmap;
+  private Bitmap downscaledBitmap;
+
+  private volatile boolean copyInFlight = false;
+  private long lastCaptureNanos = 0;
+
+  /**
+   * @param frameRate how many frames to capture per second at most
+   */
+  public SceneCapturer(ArSceneView sceneView, RecordingPipeline pipeline, int frameRate) {
+    this.sceneView = sceneView;
+    this.pipeline = pipeline;
+    this.frameIntervalNanos = 1_000_000_000L / frameRate;
+    captureThread.start();
+    captureHandler = new Handler(captureThread.getLooper());
+  }
+
+  /** Stops capturing and the capture thread. A copy in flight still completes. */
+  public void release() {
+    captureThread.quitSafely();
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    long now = System.nanoTime();
+    if (copyInFlight || now - lastCaptureNanos < frameIntervalNanos) {
+      return;
+    }
+    if (sceneView.getWidth() == 0 || sceneView.getHeight() == 0) {
+      return;
+    }
+
+    FrameBuffer buffer = pipeline.acquire();
+    if (buffer == null) {
+      return;
+    }
+    lastCaptureNanos = now;
+
+    int divisor = pipeline.getCaptureDivisor();
+    Bitmap bitmap =
+        bitmapFor(pipeline.getWidth() / divisor, pipeline.getHeight() / divisor, divisor == 1);
+    copyInFlight = true;
+    PixelCopy.request(
+        sceneView,
+        bitmap,
+        result -> {
+          // Runs on the capture thread.
+          if (result == PixelCopy.SUCCESS) {
+            bitmap.copyPixelsToBuffer(buffer.prepare(bitmap.getWidth(), bitmap.getHeight(), now));
+            pipeline.submit(buffer);
+          } else {
+            pipeline.release(buffer);
+          }
+          copyInFlight = false;
+        },
+        captureHandler);
+  }
+
+  private Bitmap bitmapFor(int width, int height, boolean fullSize) {
+    if (fullSize) {
+      if (fullSizeBitmap == null) {
+        fullSizeBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      }
+      return fullSizeBitmap;
+    }
+    if (downscaledBitmap == null) {
+      downscaledBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    return downscaledBitmap;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Splits a recording into segments of a fixed length, each written by its own encoder into a file
+ * from a {@link RecordingStorage}.
+ *
+ * <p>The file for the next segment is reserved as soon as a segment starts, so it's normally ready
+ * by the time it's needed and rolling over doesn't wait for the file system.
+ */
+public class SegmentedFrameEncoder implements FrameEncoder {
+  /** Creates the encoder that writes one segment. */
+  public interface SegmentEncoderFactory {
+    FrameEncoder create(File file) throws IOException;
+  }
+
+  private final RecordingStorage storage;
+  private final SegmentEncoderFactory factory;
+  private final long segmentNanos;
+  private final long segmentBytes;
+
+  private int width;
+  private int height;
+  private FrameEncoder segmentEncoder;
+  private File segmentFile;
+  private boolean segmentHasFrames;
+  private long segmentStartNanos;
+  private CompletableFuture<File> nextSegmentFile;
+
+  /**
+   * @param segmentNanos the length of each segment, measured by the frame timestamps
+   * @param segmentBytes how much space to reserve for each segment
+   */
+  public SegmentedFrameEncoder(
+      RecordingStorage storage,
+      SegmentEncoderFactory factory,
+      long segmentNanos,
+      long segmentBytes) {
+    this.storage = storage;
+    this.factory = factory;
+    this.segmentNanos = segmentNanos;
+    this.segmentBytes = segmentBytes;
+  }
+
+  @Override
+  public void start(int width, int height) throws IOException {
+    this.width = width;
+    this.height = height;
+    nextSegmentFile = storage.reserveSegment(segmentBytes);
+    startSegment();
+  }
+
+  @Override
+  public void encode(FrameBuffer frame) throws IOException {
+    long timestamp = frame.getTimestampNanos();
+    if (segmentHasFrames && timestamp - segmentStartNanos >= segmentNanos) {
+      finishSegment();
+      startSegment();
+    }
+    if (!segmentHasFrames) {
+      segmentHasFrames = true;
+      segmentStartNanos = timestamp;
+    }
+    segmentEncoder.encode(frame);
+  }
+
+  @Override
+  public void stop() throws IOException {
+    try {
+      if (segmentEncoder != null) {
+        finishSegment();
+      }
+    } finally {
+      if (nextSegmentFile != null) {
+        nextSegmentFile.thenAccept(storage::discardSegment);
+        nextSegmentFile = null;
+      }
+    }
+  }
+
+  private void startSegment() throws IOException {
+    segmentFile = await(nextSegmentFile);
+    nextSegmentFile = null;
+    try {
+      segmentEncoder = factory.create(segmentFile);
+      segmentEncoder.start(width, height);
+    } catch (IOException | RuntimeException e) {
+      // Whatever the encoder started before it failed is released and the file closed before it's
+      // deleted. Nothing was written to it, it would only take up space as a segment.
+      if (segmentEncoder != null) {
+        try {
+          segmentEncoder.stop();
+        } catch (IOException | RuntimeException stopError) {
+          e.addSuppressed(stopError);
+        }
+        segmentEncoder = null;
+      }
+      storage.discardSegment(segmentFile);
+      throw e;
+    }
+    segmentHasFrames = false;
+    nextSegmentFile = storage.reserveSegment(segmentBytes);
+  }
+
+  private void finishSegment() throws IOException {
+    FrameEncoder encoder = segmentEncoder;
+    segmentEncoder = null;
+    try {
+      encoder.stop();
+    } finally {
+      storage.finishSegment(segmentFile);
+    }
+  }
+
+  private static File await(CompletableFuture<File> file) throws IOException {
+    try {
+      return file.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a recording segment");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Unable to reserve a recording segment", e.getCause());
+    }
+  }
+}
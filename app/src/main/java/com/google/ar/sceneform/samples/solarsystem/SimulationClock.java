@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * The simulation time every body's pose is computed from.
+ *
+ * <p>The clock runs at a warp factor relative to {@link #DAYS_PER_SECOND}; a negative warp runs it
+ * backwards. It can be paused and jumped to any date, which only sets the time: nothing is animated
+ * through the interval, the next poses are simply computed at the new time.
+ *
+ * <p>Spin runs on the same clock but not at its warp: {@link #getSpinSeconds} advances with real
+ * time at the spin rate, so the orbit speed never speeds up the planets' spin. Pausing still stops
+ * the planets spinning and reversing spins them backwards. Changing the spin rate or jumping to a
+ * date continues from the current angles.
+ */
+public class SimulationClock {
+  // Simulated days that pass per second at a warp of 1. At this rate the Earth completes an orbit
+  // in about 12 seconds.
+  public static final double DAYS_PER_SECOND = 30.0;
+
+  // 2000-01-01T12:00:00Z, the epoch of the orbital elements.
+  public static final long J2000_EPOCH_MILLIS = 946_728_000_000L;
+  private static final double MILLIS_PER_DAY = 86_400_000.0;
+
+  // Simulation time in days since J2000.
+  private double days = 0.0;
+  private double warp = 1.0;
+  private boolean paused = false;
+
+  // Accumulated frame by frame, so the angles carry on from wherever they are when the spin rate
+  // or the date changes.
+  private float spinRate = 1.0f;
+  private double spinSeconds = 0.0;
+
+  /** Advances the clock by a frame, unless it's paused. */
+  public void advance(float realSeconds) {
+    if (!paused) {
+      days += realSeconds * DAYS_PER_SECOND * warp;
+      spinSeconds += warp < 0.0 ? -realSeconds * spinRate : realSeconds * spinRate;
+    }
+  }
+
+  /** Simulation time in days since J2000. */
+  public double getDays() {
+    return days;
+  }
+
+  /**
+   * Seconds of spin at a spin rate of 1: the real time the clock ran so far, scaled by the spin
+   * rate and counted backwards while reversed.
+   */
+  public double getSpinSeconds() {
+    return spinSeconds;
+  }
+
+  public double getWarp() {
+    return warp;
+  }
+
+  /** Sets how fast the clock runs relative to {@link #DAYS_PER_SECOND}, negative to reverse it. */
+  public void setWarp(double warp) {
+    this.warp = warp;
+  }
+
+  public boolean isPaused() {
+    return paused;
+  }
+
+  public void setPaused(boolean paused) {
+    this.paused = paused;
+  }
+
+  public float getSpinRate() {
+    return spinRate;
+  }
+
+  /** Sets how fast bodies spin for the real time that passes, relative to their own spin speeds. */
+  public void setSpinRate(float spinRate) {
+    this.spinRate = spinRate;
+  }
+
+  /** Sets the simulation time, in days since J2000. The bodies keep their spin. */
+  public void jumpToDays(double days) {
+    this.days = days;
+  }
+
+  /** Sets the simulation time to a date, in milliseconds since the Unix epoch. */
+  public void jumpToDate(long epochMillis) {
+    jumpToDays(toDays(epochMillis));
+  }
+
+  /** The simulation time as a date, in milliseconds since the Unix epoch. */
+  public long getDateMillis() {
+    return J2000_EPOCH_MILLIS + Math.round(days * MILLIS_PER_DAY);
+  }
+
+  /** Converts milliseconds since the Unix epoch to days since J2000. */
+  public static double toDays(long epochMillis) {
+    return (epochMillis - J2000_EPOCH_MILLIS) / MILLIS_PER_DAY;
+  }
+}
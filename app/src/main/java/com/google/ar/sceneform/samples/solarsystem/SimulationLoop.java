@@ -0,0 +1,331 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Advances a {@link SimulationClock} with the latest {@link SolarSettings}, computes the poses of a
+ * {@link BodySimulation} at the clock's time and writes them to a {@link BodyScene}.
+ *
+ * <p>This is everything the app does to move the bodies, without depending on Android, ARCore or a
+ * GPU. The simulation itself is a {@link SimulationStepper}. After {@link #start}, it runs on its
+ * own thread at a fixed rate of {@link #STEPS_PER_SECOND} and hands every step to the render thread
+ * through a {@link PoseBuffer}, so expensive modes like gravity never take time from a frame. Each
+ * {@link #update} then shows the poses one step in the past, interpolated between the two steps
+ * around that time, which keeps the motion smooth whatever the frame rate. Before {@link #start}
+ * and after {@link #stop}, every update steps the simulation on the calling thread instead.
+ *
+ * <p>Apart from {@link #start} and {@link #stop}, every method must be called on the render thread.
+ * Changes to the simulation are queued and applied by the simulation thread before its next step;
+ * scale changes are only written on the next update.
+ */
+public class SimulationLoop {
+  /** Rate of the simulation thread, in steps per second of real time. */
+  public static final int STEPS_PER_SECOND = 60;
+
+  private static final long STEP_NANOS = TimeUnit.SECONDS.toNanos(1) / STEPS_PER_SECOND;
+  private static final float STEP_SECONDS = 1.0f / STEPS_PER_SECOND;
+  // If the simulation thread falls further behind than this, it skips the steps it missed instead
+  // of running them back to back.
+  private static final int MAX_LAG_STEPS = 4;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final SimulationStepper stepper;
+  private final BodyScene scene;
+  private final PoseBuffer poses = new PoseBuffer();
+  private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+  // Read by the simulation thread before every step.
+  private volatile float distanceScale = 1.0f;
+  private volatile boolean running = false;
+  private Thread thread;
+
+  // The render thread's view of the simulation.
+  private int bodyCount = 0;
+  private int gravityBodyCount = 0;
+  private double simulationDays = 0.0;
+  // Jumps posted to the simulation. Until it publishes a frame after the last one, the time jumped
+  // to stands in for the time of the frames shown.
+  private int postedJumps = 0;
+  private boolean distanceScaleChanged = false;
+  private float[] scales = new float[INITIAL_CAPACITY];
+  private boolean scalesChanged = false;
+
+  // The frame and the interpolation last written to the scene.
+  private long shownVersion = 0;
+  private float shownInterpolation = Float.NaN;
+
+  public SimulationLoop(SolarSettingsStore settingsStore, BodyScene scene) {
+    this.stepper = new SimulationStepper(settingsStore);
+    this.scene = scene;
+  }
+
+  /**
+   * Adds a body and places it on its orbit. Its transform is written to the scene from the next
+   * step on.
+   *
+   * @param orbit the body's orbit around its parent
+   * @param orbitRadius displayed distance of the semi-major axis, in meters
+   * @param degreesPerSecond spin of the body at a rotation speed multiplier of 1
+   * @return the index of the body
+   */
+  public int addBody(OrbitalElements orbit, float orbitRadius, float degreesPerSecond) {
+    int index = bodyCount++;
+    if (index >= scales.length) {
+      scales = Arrays.copyOf(scales, scales.length * 2);
+    }
+    scales[index] = 1.0f;
+    post(() -> stepper.addBody(orbit, orbitRadius, degreesPerSecond));
+    return index;
+  }
+
+  /** Takes a body's positions from precomputed tables, see {@link BodySimulation#useEphemeris}. */
+  public void useEphemeris(int index, Ephemeris ephemeris, int ephemerisBody) {
+    post(() -> stepper.useEphemeris(index, ephemeris, ephemerisBody));
+  }
+
+  public int getBodyCount() {
+    return bodyCount;
+  }
+
+  /**
+   * Simulation time of the poses the last update showed, in days since J2000. After a jump, the
+   * time jumped to, even before any update showed it.
+   */
+  public double getSimulationDays() {
+    return simulationDays;
+  }
+
+  /**
+   * Sets the simulation time to a date, in milliseconds since the Unix epoch. Every body is shown
+   * at that date from the next step.
+   */
+  public void jumpToDate(long epochMillis) {
+    jumpToDays(SimulationClock.toDays(epochMillis));
+  }
+
+  /** Sets the simulation time, in days since J2000, see {@link #jumpToDate}. */
+  public void jumpToDays(double days) {
+    // Known from here on, whether or not there are bodies to show at that time yet.
+    simulationDays = days;
+    postedJumps++;
+    post(() -> stepper.jumpToDays(days));
+  }
+
+  /**
+   * Sets the simulation used while gravity is enabled in the settings. Its bodies move the scene
+   * bodies given by {@link GravitySimulation#getSceneBody}; the others keep following their orbits.
+   * From here on, the simulation belongs to this loop's simulation thread.
+   */
+  public void setGravity(GravitySimulation gravity) {
+    gravityBodyCount = gravity.getBodyCount();
+    post(() -> stepper.setGravity(gravity));
+  }
+
+  /**
+   * Adds a body to the gravity simulation at its current time, see {@link
+   * GravitySimulation#addBody}.
+   *
+   * @return the index of the body in the gravity simulation
+   */
+  public int addGravityBody(double mass, int parent, OrbitalElements orbit, int sceneBody) {
+    int index = gravityBodyCount++;
+    post(() -> stepper.addGravityBody(mass, parent, orbit, sceneBody));
+    return index;
+  }
+
+  public float getDistanceScale() {
+    return distanceScale;
+  }
+
+  /** Sets the multiplier applied to every orbit radius, applied from the next step. */
+  public void setDistanceScale(float distanceScale) {
+    if (this.distanceScale != distanceScale) {
+      this.distanceScale = distanceScale;
+      distanceScaleChanged = true;
+    }
+  }
+
+  /** Sets the world scale of a body, applied on the next update. */
+  public void setBodyScale(int index, float scale) {
+    if (scales[index] != scale) {
+      scales[index] = scale;
+      scalesChanged = true;
+    }
+  }
+
+  /** Starts stepping the simulation on its own thread. Does nothing if it already runs. */
+  public void start() {
+    if (thread != null) {
+      return;
+    }
+    running = true;
+    thread = new Thread(this::runSimulation, "Simulation");
+    thread.start();
+  }
+
+  /**
+   * Stops the simulation thread and waits for it to finish its step. Changes made afterwards apply
+   * right away, and updates step the simulation themselves until the next {@link #start}.
+   */
+  public void stop() {
+    if (thread == null) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(thread);
+    boolean interrupted = false;
+    while (thread.isAlive()) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    thread = null;
+    runCommands();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Writes the latest poses to the scene. Without a simulation thread, advances the simulation
+   * first.
+   *
+   * @param deltaSeconds real time since the last update, only used without a simulation thread
+   * @return true if the distance scale changed since the last update
+   */
+  public boolean update(float deltaSeconds) {
+    boolean threaded = thread != null;
+    if (!threaded) {
+      runCommands();
+      stepper.step(deltaSeconds, distanceScale);
+      stepper.publish(poses, 0);
+    }
+
+    PoseBuffer.Frame frame = poses.acquire();
+    if (frame != null) {
+      try {
+        float interpolation =
+            threaded ? frame.interpolation(System.nanoTime() - STEP_NANOS) : 1.0f;
+        if (frame.version != shownVersion || interpolation != shownInterpolation) {
+          shownVersion = frame.version;
+          shownInterpolation = interpolation;
+          show(frame, interpolation);
+        }
+      } finally {
+        poses.release();
+      }
+    }
+    if (scalesChanged) {
+      pushScales();
+      scalesChanged = false;
+    }
+
+    boolean distanceChanged = distanceScaleChanged;
+    distanceScaleChanged = false;
+    return distanceChanged;
+  }
+
+  /** Body of the simulation thread: steps at a fixed rate until {@link #stop}. */
+  private void runSimulation() {
+    long dueNanos = System.nanoTime();
+    while (running) {
+      runCommands();
+      dueNanos += STEP_NANOS;
+      stepper.step(STEP_SECONDS, distanceScale);
+      // If the render thread holds the only free frame, this step is published with the next one.
+      stepper.publish(poses, dueNanos);
+
+      long waitNanos = dueNanos - System.nanoTime();
+      if (waitNanos > 0) {
+        LockSupport.parkNanos(this, waitNanos);
+      } else if (waitNanos < -MAX_LAG_STEPS * STEP_NANOS) {
+        dueNanos = System.nanoTime();
+      }
+    }
+  }
+
+  /** Applies a change to the simulation on the thread that steps it. */
+  private void post(Runnable command) {
+    if (thread == null) {
+      command.run();
+    } else {
+      commands.add(command);
+    }
+  }
+
+  private void runCommands() {
+    Runnable command;
+    while ((command = commands.poll()) != null) {
+      command.run();
+    }
+  }
+
+  /** Writes the poses at a fraction {@code t} of the way between the frame's two steps. */
+  private void show(PoseBuffer.Frame frame, float t) {
+    if (frame.jumps == postedJumps) {
+      simulationDays = frame.previousDays + (frame.days - frame.previousDays) * t;
+    }
+    float[] previousPositions = frame.previousPositions;
+    float[] positions = frame.positions;
+    float[] previousRotations = frame.previousRotations;
+    float[] rotations = frame.rotations;
+    for (int i = 0; i < frame.bodyCount; i++) {
+      int p = i * 3;
+      scene.applyPosition(
+          i,
+          lerp(previousPositions[p], positions[p], t),
+          lerp(previousPositions[p + 1], positions[p + 1], t),
+          lerp(previousPositions[p + 2], positions[p + 2], t));
+
+      // Normalized lerp along the shorter arc, close enough to a slerp for a step's worth of spin.
+      int r = i * 4;
+      float x0 = previousRotations[r];
+      float y0 = previousRotations[r + 1];
+      float z0 = previousRotations[r + 2];
+      float w0 = previousRotations[r + 3];
+      float dot =
+          x0 * rotations[r]
+              + y0 * rotations[r + 1]
+              + z0 * rotations[r + 2]
+              + w0 * rotations[r + 3];
+      float sign = dot < 0.0f ? -1.0f : 1.0f;
+      float x = lerp(x0, rotations[r] * sign, t);
+      float y = lerp(y0, rotations[r + 1] * sign, t);
+      float z = lerp(z0, rotations[r + 2] * sign, t);
+      float w = lerp(w0, rotations[r + 3] * sign, t);
+      float inverseLength = (float) (1.0 / Math.sqrt(x * x + y * y + z * z + w * w));
+      scene.applyRotation(
+          i, x * inverseLength, y * inverseLength, z * inverseLength, w * inverseLength);
+    }
+  }
+
+  private static float lerp(float from, float to, float t) {
+    return from + (to - from) * t;
+  }
+
+  private void pushScales() {
+    for (int i = 0; i < bodyCount; i++) {
+      scene.applyScale(i, scales[i]);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * The simulation side of {@link SimulationLoop}: advances a {@link SimulationClock} with the latest
+ * {@link SolarSettings}, computes the poses of a {@link BodySimulation} at the clock's time and
+ * publishes them to a {@link PoseBuffer}.
+ *
+ * <p>Every method must be called on the same thread, normally the loop's simulation thread. Nothing
+ * is recomputed or published while the clock stands still.
+ *
+ * <p>With a {@link GravitySimulation} set and gravity enabled in the settings, bodies move under
+ * their mutual gravity instead of along their orbits.
+ */
+final class SimulationStepper {
+  // Most leapfrog steps a single step integrates. Beyond this the gravity simulation falls behind
+  // the clock rather than delaying every other body as well.
+  private static final int MAX_GRAVITY_STEPS = 256;
+
+  private final SolarSettingsStore settingsStore;
+  private final BodySimulation simulation = new BodySimulation();
+  private final SimulationClock clock = new SimulationClock();
+
+  // Set when the poses changed since they were last published.
+  private boolean posesChanged = true;
+  // Set when the next published poses shouldn't be interpolated from the previous ones.
+  private boolean discontinuous = true;
+
+  // Jumps applied so far, published with every frame.
+  private int jumps = 0;
+
+  // The poses that were published last, the previous poses of the next frame.
+  private long publishedVersion = 0;
+  private int publishedBodyCount = 0;
+  private float[] publishedPositions = new float[0];
+  private float[] publishedRotations = new float[0];
+  private double publishedDays;
+  private long publishedNanos;
+
+  private GravitySimulation gravity;
+  private boolean gravityActive = false;
+  private boolean gravityResetPending = false;
+  private float[] gravityPositions = new float[0];
+  // After leaving gravity mode the orbits are evaluated again, even if the clock stood still.
+  private boolean orbitsStale = false;
+
+  SimulationStepper(SolarSettingsStore settingsStore) {
+    this.settingsStore = settingsStore;
+  }
+
+  /** See {@link SimulationLoop#addBody}. */
+  int addBody(OrbitalElements orbit, float orbitRadius, float degreesPerSecond) {
+    posesChanged = true;
+    return simulation.addBody(orbit, orbitRadius, degreesPerSecond);
+  }
+
+  /** Takes a body's positions from precomputed tables, see {@link BodySimulation#useEphemeris}. */
+  void useEphemeris(int index, Ephemeris ephemeris, int ephemerisBody) {
+    simulation.useEphemeris(index, ephemeris, ephemerisBody);
+    posesChanged = true;
+    orbitsStale = true;
+  }
+
+  int getBodyCount() {
+    return simulation.getBodyCount();
+  }
+
+  /** Sets the simulation time, in days since J2000. */
+  void jumpToDays(double days) {
+    clock.jumpToDays(days);
+    jumps++;
+    // Gravity can't be evaluated at any time directly, the bodies start over from their orbits.
+    gravityResetPending = true;
+    discontinuous = true;
+  }
+
+  /** See {@link SimulationLoop#setGravity}. */
+  void setGravity(GravitySimulation gravity) {
+    this.gravity = gravity;
+    gravityResetPending = true;
+  }
+
+  /** See {@link SimulationLoop#addGravityBody}. */
+  int addGravityBody(double mass, int parent, OrbitalElements orbit, int sceneBody) {
+    posesChanged = true;
+    return gravity.addBody(mass, parent, orbit, sceneBody);
+  }
+
+  /**
+   * Advances the clock and computes the poses at its new time.
+   *
+   * @param deltaSeconds real time since the last step
+   * @param distanceScale multiplier applied to every orbit radius
+   */
+  void step(float deltaSeconds, float distanceScale) {
+    posesChanged |= simulation.setDistanceScale(distanceScale);
+    SolarSettings settings = settingsStore.get();
+    float orbitSpeed = settings.getOrbitSpeedMultiplier();
+    clock.setWarp(settings.isReversed() ? -orbitSpeed : orbitSpeed);
+    clock.setPaused(settings.isPaused());
+    clock.setSpinRate(settings.getRotationSpeedMultiplier());
+    clock.advance(deltaSeconds);
+
+    double days = clock.getDays();
+    double spinSeconds = clock.getSpinSeconds();
+    boolean useGravity = gravity != null && settings.isGravityEnabled();
+    if (useGravity != gravityActive) {
+      gravityActive = useGravity;
+      gravityResetPending |= useGravity;
+      orbitsStale |= !useGravity;
+    }
+
+    if (gravityActive) {
+      stepGravity(days, spinSeconds);
+    } else if (orbitsStale
+        || posesChanged
+        || days != simulation.getSimulationDays()
+        || spinSeconds != simulation.getSpinSeconds()) {
+      simulation.setTime(days, spinSeconds);
+      orbitsStale = false;
+      posesChanged = true;
+    }
+  }
+
+  /** Integrates the gravity simulation up to the clock and places the bodies it moves. */
+  private void stepGravity(double days, double spinSeconds) {
+    if (gravityResetPending) {
+      gravity.reset(days);
+      gravityResetPending = false;
+      discontinuous = true;
+    } else if (!posesChanged
+        && days == simulation.getSimulationDays()
+        && spinSeconds == simulation.getSpinSeconds()) {
+      return;
+    }
+    gravity.advance(days, MAX_GRAVITY_STEPS);
+
+    // Evaluates the orbits for the bodies outside the gravity simulation, then overrides the
+    // others.
+    simulation.setTime(days, spinSeconds);
+    int length = gravity.getBodyCount() * 3;
+    if (gravityPositions.length < length) {
+      gravityPositions = new float[length];
+    }
+    gravity.copyRelativePositions(gravityPositions);
+    for (int i = 0; i < gravity.getBodyCount(); i++) {
+      int sceneBody = gravity.getSceneBody(i);
+      if (sceneBody >= 0) {
+        simulation.placeBody(sceneBody, gravityPositions, i * 3);
+      }
+    }
+    posesChanged = true;
+  }
+
+  /**
+   * Publishes the poses if they changed since they were last published. Poses that didn't change
+   * are still valid at {@code nanos}, so the next change is interpolated from there.
+   *
+   * @param nanos when the poses are due, on the {@link System#nanoTime} time line
+   * @return false if the reader held the only frame that could be written; the poses are published
+   *     with the next call instead
+   */
+  boolean publish(PoseBuffer buffer, long nanos) {
+    if (!posesChanged) {
+      publishedNanos = nanos;
+      return true;
+    }
+    PoseBuffer.Frame frame = buffer.beginWrite();
+    if (frame == null) {
+      return false;
+    }
+
+    int bodyCount = simulation.getBodyCount();
+    frame.ensureCapacity(bodyCount);
+    frame.version = ++publishedVersion;
+    frame.jumps = jumps;
+    frame.bodyCount = bodyCount;
+    System.arraycopy(simulation.getPositions(), 0, frame.positions, 0, bodyCount * 3);
+    System.arraycopy(simulation.getRotations(), 0, frame.rotations, 0, bodyCount * 4);
+    frame.days = simulation.getSimulationDays();
+    frame.nanos = nanos;
+
+    // Bodies that weren't published before, and every body after a jump, start where they are.
+    int previousCount = discontinuous ? 0 : publishedBodyCount;
+    System.arraycopy(publishedPositions, 0, frame.previousPositions, 0, previousCount * 3);
+    System.arraycopy(publishedRotations, 0, frame.previousRotations, 0, previousCount * 4);
+    System.arraycopy(
+        frame.positions,
+        previousCount * 3,
+        frame.previousPositions,
+        previousCount * 3,
+        (bodyCount - previousCount) * 3);
+    System.arraycopy(
+        frame.rotations,
+        previousCount * 4,
+        frame.previousRotations,
+        previousCount * 4,
+        (bodyCount - previousCount) * 4);
+    frame.previousDays = discontinuous ? frame.days : publishedDays;
+    frame.previousNanos = discontinuous ? nanos : publishedNanos;
+    buffer.publish();
+
+    if (publishedPositions.length < bodyCount * 3) {
+      publishedPositions = new float[frame.positions.length];
+      publishedRotations = new float[frame.rotations.length];
+    }
+    System.arraycopy(frame.positions, 0, publishedPositions, 0, bodyCount * 3);
+    System.arraycopy(frame.rotations, 0, publishedRotations, 0, bodyCount * 4);
+    publishedBodyCount = bodyCount;
+    publishedDays = frame.days;
+    publishedNanos = nanos;
+    posesChanged = false;
+    discontinuous = false;
+    return true;
+  }
+}
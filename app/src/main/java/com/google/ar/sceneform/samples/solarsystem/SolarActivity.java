@@ -15,13 +15,10 @@
  */
 package com.google.ar.sceneform.samples.solarsystem;
 
+import android.Manifest;
 import android.content.Context;
-import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.graphics.Color;
-import android.hardware.display.VirtualDisplay;
-import android.media.MediaRecorder;
-import android.media.projection.MediaProjection;
-import android.media.projection.MediaProjectionManager;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
@@ -32,7 +29,6 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
-import android.view.Surface;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.ProgressBar;
@@ -60,25 +56,20 @@ import com.google.ar.sceneform.rendering.ViewRenderable;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import android.app.Activity;
-import android.app.ActivityManager;
 import android.content.Context;
-import android.content.Intent;
 import android.graphics.Color;
-import android.hardware.display.VirtualDisplay;
 import android.net.Uri;
-import android.os.Build;
-import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.os.Environment;
 import android.provider.MediaStore;
 import android.support.v4.app.ActivityCompat;
-
-import android.hardware.display.DisplayManager;
-
+import android.support.v4.content.ContextCompat;
 
 import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
@@ -89,6 +80,7 @@ import java.util.Date;
  * ARCore and Sceneform APIs.
  */
 public class SolarActivity extends AppCompatActivity {
+    private static final String TAG = SolarActivity.class.getSimpleName();
     private static final int RC_PERMISSIONS = 0x123;
     private boolean installRequested;
 
@@ -97,19 +89,20 @@ public class SolarActivity extends AppCompatActivity {
 
     private ArSceneView arSceneView;
 
+    // Everything that outlives this activity, the sources of the fields below.
+    private SolarApplication application;
+
+    // Every body of the solar system and their precomputed positions, see SolarApplication.
+    private CelestialCatalog catalog;
+    private Ephemeris ephemeris;
+
+    // Loads models on first use, shared with earlier instances of this activity.
+    private RenderableRepository renderables;
     private ModelRenderable sunRenderable;
-    private ModelRenderable mercuryRenderable;
-    private ModelRenderable venusRenderable;
-    private ModelRenderable earthRenderable;
-    private ModelRenderable lunaRenderable;
-    private ModelRenderable marsRenderable;
-    private ModelRenderable jupiterRenderable;
-    private ModelRenderable saturnRenderable;
-    private ModelRenderable uranusRenderable;
-    private ModelRenderable neptuneRenderable;
     private ViewRenderable solarControlsRenderable;
 
-    private final SolarSettings solarSettings = new SolarSettings();
+    // Written by the sliders, read by everything they control. Kept by SolarApplication.
+    private SolarSettingsStore settingsStore;
 
     // True once scene is loaded
     private boolean hasFinishedLoading = false;
@@ -122,17 +115,73 @@ public class SolarActivity extends AppCompatActivity {
 
     private ArrayList<Planet> planetList = new ArrayList<Planet>();
 
-    private static final int PERMISSION_CODE = 1;
-    private int mScreenDensity;
-    private MediaProjectionManager mProjectionManager;
+    // Fixed seeds so the belts look the same every time.
+    private static final long MAIN_BELT_SEED = 1801L;
+    private static final long KUIPER_BELT_SEED = 1992L;
+
+    // Moves all planets along their orbits and spins them, once per frame. Created in onCreate.
+    private OrbitDriver orbitDriver;
+
+    // A massive body on a steep, eccentric orbit that can be added to see how it disturbs the
+    // planets with gravity enabled. It starts a little before its closest approach to the sun.
+    private static final double ROGUE_MASS = 5.0 * 9.5479e-4;
+    private static final double ROGUE_SEMI_MAJOR_AXIS_AU = 12.0;
+    private static final double ROGUE_ECCENTRICITY = 0.85;
+    private static final double ROGUE_MEAN_ANOMALY = -20.0;
+    private static final float ROGUE_DISPLAY_AU = 4.0f;
+    private static final float ROGUE_SCALE = 0.14f;
+
+    // Frame time percentiles, shown next to the solar controls. Created with the scene in onCreate.
+    private FrameStatsOverlay frameStatsOverlay;
+
+    // Hides bodies that are out of view or too small to see. Created with the scene in onCreate.
+    private BodyCuller bodyCuller;
+
+    // Draws the labels of every body from one glyph atlas. Created with the scene in onCreate.
+    private LabelRenderer labelRenderer;
+
+    // Nodes resized by the scale slider, created in createSolarSystem.
+    private Node sunVisual;
+    private Node solarControls;
+    private float sunScale;
+
+    // Scale and distance slider values as actually shown, easing towards the targets in the
+    // settings. Created when the solar system is placed.
+    private long appliedSettingsVersion = -1;
+    private static final float SLIDER_EASING_RATE = 12.0f;
+    private EasedValue planetScaleRatio;
+    private EasedValue distanceRatio;
+    private final Vector3 scratchVector = new Vector3();
+
+    // Resolves taps on the sun and planets once the solar system is placed.
+    private final BodyPicker bodyPicker = new BodyPicker();
+
+    // True if the current touch started on a node Sceneform hit tests itself, like the controls.
+    private boolean touchStartedOnNode = false;
+
+    private static final int RC_STORAGE_PERMISSION = 200;
     private static int DISPLAY_WIDTH = 480;
     private static int DISPLAY_HEIGHT = 640;
-    private MediaProjection mMediaProjection;
-    private VirtualDisplay mVirtualDisplay;
-    private MediaProjection.Callback mMediaProjectionCallback;
     private ToggleButton mToggleButton;
-    private MediaRecorder mMediaRecorder;
-    private Surface getSurface;
+
+    // Recordings are captured at half the display size, which the encoder needs in multiples of 16.
+    private static final int RECORDING_FRAME_RATE = 30;
+    private static final int RECORDING_BUFFER_COUNT = 4;
+    private static final float RECORDING_BITS_PER_PIXEL = 0.15f;
+
+    // Recordings are split into segments of this length, and the oldest segments are deleted once
+    // all of them together exceed the quota. Segment files are reserved with some headroom over
+    // the nominal bit rate.
+    private static final long RECORDING_SEGMENT_SECONDS = 60;
+    private static final long RECORDING_QUOTA_BYTES = 1024L * 1024 * 1024;
+    private static final float RECORDING_SEGMENT_HEADROOM = 1.25f;
+
+    // Created in onCreate, keeps the segments in the Recordings directory.
+    private RecordingStorage recordingStorage;
+
+    // Set while recording.
+    private RecordingPipeline recordingPipeline;
+    private SceneCapturer sceneCapturer;
 
     @Override
     @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
@@ -140,6 +189,14 @@ public class SolarActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // Pick up the settings and the simulation time where the last instance left them.
+        application = (SolarApplication) getApplication();
+        settingsStore = application.getSettingsStore();
+        orbitDriver = new OrbitDriver(settingsStore);
+        if (!Double.isNaN(application.getSimulationDays())) {
+            orbitDriver.jumpToDays(application.getSimulationDays());
+        }
+
         if (!DemoUtils.checkIsSupportedDeviceOrFinish(this)) {
             // Not a supported device.
             return;
@@ -151,11 +208,17 @@ public class SolarActivity extends AppCompatActivity {
 
         DisplayMetrics metrics = new DisplayMetrics();
         getWindowManager().getDefaultDisplay().getMetrics(metrics);
-        mScreenDensity = metrics.densityDpi;
 
         DISPLAY_HEIGHT = metrics.heightPixels;
         DISPLAY_WIDTH = metrics.widthPixels;
 
+        recordingStorage =
+                new RecordingStorage(
+                        new File(Environment.getExternalStorageDirectory(), "Recordings"),
+                        "capture",
+                        ".mp4",
+                        RECORDING_QUOTA_BYTES);
+
         mToggleButton = (ToggleButton) findViewById(R.id.toggle);
         mToggleButton.setText("Click to record!");
         mToggleButton.setOnClickListener(new View.OnClickListener() {
@@ -167,47 +230,41 @@ public class SolarActivity extends AppCompatActivity {
             }
         });
 
-        mMediaProjectionCallback = new MediaProjectionCallback();
-
-
-        // Build all the planet models.
-        CompletableFuture<ModelRenderable> sunStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Sol.sfb")).build();
-        CompletableFuture<ModelRenderable> mercuryStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Mercury.sfb")).build();
-        CompletableFuture<ModelRenderable> venusStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Venus.sfb")).build();
-        CompletableFuture<ModelRenderable> earthStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Earth.sfb")).build();
-        CompletableFuture<ModelRenderable> lunaStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Luna.sfb")).build();
-        CompletableFuture<ModelRenderable> marsStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Mars.sfb")).build();
-        CompletableFuture<ModelRenderable> jupiterStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Jupiter.sfb")).build();
-        CompletableFuture<ModelRenderable> saturnStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Saturn.sfb")).build();
-        CompletableFuture<ModelRenderable> uranusStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Uranus.sfb")).build();
-        CompletableFuture<ModelRenderable> neptuneStage =
-                ModelRenderable.builder().setSource(this, Uri.parse("Neptune.sfb")).build();
+
+        try {
+            catalog = application.getCatalog();
+        } catch (IOException | IllegalArgumentException ex) {
+            DemoUtils.displayError(this, "Unable to load solar system catalog", ex);
+            finish();
+            return;
+        }
+        ephemeris = application.getEphemeris();
+
+        // Models are loaded on first use and outlive the activity, so after a recreation the models
+        // that were already loaded are reattached right away.
+        renderables = application.getRenderables();
+
+        // Only the sun and the controls are needed to place the solar system. The coarsest variants
+        // of the other models are queued behind the sun, inner bodies first, and swapped in as they
+        // finish loading. Finer variants are loaded once a planet is large enough on screen.
+        String sunModel = catalog.get(0).getModel();
+        CompletableFuture<ModelRenderable> sunStage = renderables.get(sunModel);
+        List<String> coarseModels = new ArrayList<>();
+        for (String model : catalog.getModelsByDistance()) {
+            if (!model.equals(sunModel)) {
+                coarseModels.add(LevelOfDetail.variant(model, LevelOfDetail.COARSEST));
+            }
+        }
+        renderables.prefetch(coarseModels);
+
+        // Build the placeholder shown by planets whose model is still loading ahead of placement.
+        renderables.getPlaceholder();
 
         // Build a renderable from a 2D View.
         CompletableFuture<ViewRenderable> solarControlsStage =
                 ViewRenderable.builder().setView(this, R.layout.solar_controls).build();
 
-        CompletableFuture.allOf(
-                sunStage,
-                mercuryStage,
-                venusStage,
-                earthStage,
-                lunaStage,
-                marsStage,
-                jupiterStage,
-                saturnStage,
-                uranusStage,
-                neptuneStage,
-                solarControlsStage)
+        CompletableFuture.allOf(sunStage, solarControlsStage)
                 .handle(
                         (notUsed, throwable) -> {
                             // When you build a Renderable, Sceneform loads its resources in the background while
@@ -221,15 +278,6 @@ public class SolarActivity extends AppCompatActivity {
 
                             try {
                                 sunRenderable = sunStage.get();
-                                mercuryRenderable = mercuryStage.get();
-                                venusRenderable = venusStage.get();
-                                earthRenderable = earthStage.get();
-                                lunaRenderable = lunaStage.get();
-                                marsRenderable = marsStage.get();
-                                jupiterRenderable = jupiterStage.get();
-                                saturnRenderable = saturnStage.get();
-                                uranusRenderable = uranusStage.get();
-                                neptuneRenderable = neptuneStage.get();
                                 solarControlsRenderable = solarControlsStage.get();
 
                                 // Everything finished loading successfully.
@@ -259,46 +307,50 @@ public class SolarActivity extends AppCompatActivity {
                             }
                         });
 
-        // Set a touch listener on the Scene to listen for taps.
+        // Watch every touch on the Scene for taps. Peeking leaves the touch to the nodes as well, so
+        // the solar controls keep working once the solar system is placed.
         arSceneView
                 .getScene()
-                .setOnTouchListener(
+                .addOnPeekTouchListener(
                         (HitTestResult hitTestResult, MotionEvent event) -> {
-                            // If the solar system hasn't been placed yet, detect a tap and then check to see if
-                            // the tap occurred on an ARCore plane to place the solar system.
-                            if (!hasPlacedSolarSystem) {
-                                return gestureDetector.onTouchEvent(event);
+                            if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                                touchStartedOnNode = hitTestResult.getNode() != null;
                             }
-
-                            // Otherwise return false so that the touch event can propagate to the scene.
-                            return false;
+                            gestureDetector.onTouchEvent(event);
                         });
 
+        // Closes each frame of FrameStats, so it has to run before the other update listeners.
+        frameStatsOverlay = new FrameStatsOverlay(this, arSceneView.getScene());
+        arSceneView.getScene().addOnUpdateListener(frameStatsOverlay);
+
         // Set an update listener on the Scene that will hide the loading message once a Plane is
         // detected.
         arSceneView
                 .getScene()
                 .addOnUpdateListener(
                         frameTime -> {
-                            if (loadingMessageSnackbar == null) {
-                                return;
-                            }
-
-                            Frame frame = arSceneView.getArFrame();
-                            if (frame == null) {
-                                return;
-                            }
-
-                            if (frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
-                                return;
-                            }
+                            long startNanos = FrameStats.start();
+                            updateLoadingMessage();
+                            FrameStats.stop(FrameStats.LISTENERS, startNanos);
+                        });
 
-                            for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
-                                if (plane.getTrackingState() == TrackingState.TRACKING) {
-                                    hideLoadingMessage();
-                                }
-                            }
+        // Applies slider changes once per frame, before orbitDriver moves the bodies.
+        arSceneView
+                .getScene()
+                .addOnUpdateListener(
+                        frameTime -> {
+                            long startNanos = FrameStats.start();
+                            applySliderTargets(frameTime.getDeltaSeconds());
+                            FrameStats.stop(FrameStats.LISTENERS, startNanos);
                         });
+        arSceneView.getScene().addOnUpdateListener(orbitDriver);
+        bodyCuller = new BodyCuller(arSceneView.getScene().getCamera());
+        arSceneView.getScene().addOnUpdateListener(bodyCuller);
+        // Places the labels once orbitDriver moved the bodies and bodyCuller hid the small ones.
+        labelRenderer = new LabelRenderer(this, arSceneView.getScene());
+        arSceneView.getScene().addOnUpdateListener(labelRenderer);
+        // Refits the picking volumes after orbitDriver moved the bodies.
+        arSceneView.getScene().addOnUpdateListener(bodyPicker);
 
         // Lastly request CAMERA permission which is required by ARCore.
         DemoUtils.requestCameraPermission(this, RC_PERMISSIONS);
@@ -334,6 +386,7 @@ public class SolarActivity extends AppCompatActivity {
             finish();
             return;
         }
+        orbitDriver.start();
 
         if (arSceneView.getSession() != null) {
             showLoadingMessage();
@@ -343,6 +396,7 @@ public class SolarActivity extends AppCompatActivity {
     @Override
     public void onPause() {
         super.onPause();
+        orbitDriver.stop();
         if (arSceneView != null) {
             arSceneView.pause();
         }
@@ -351,20 +405,23 @@ public class SolarActivity extends AppCompatActivity {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        application.setSimulationDays(orbitDriver.getSimulationDays());
+        stopRecording();
         if (arSceneView != null) {
             arSceneView.destroy();
         }
-        if (mMediaProjection != null) {
-            mMediaProjection.stop();
-            mMediaRecorder.reset();
-
-            mMediaProjection = null;
-        }
     }
 
     @Override
     public void onRequestPermissionsResult(
             int requestCode, @NonNull String[] permissions, @NonNull int[] results) {
+        if (requestCode == RC_STORAGE_PERMISSION) {
+            if (results.length > 0 && results[0] == PackageManager.PERMISSION_GRANTED) {
+                mToggleButton.setChecked(true);
+                onToggleScreenShare(mToggleButton);
+            }
+            return;
+        }
         if (!DemoUtils.hasCameraPermission(this)) {
             if (!DemoUtils.shouldShowRequestPermissionRationale(this)) {
                 // Permission denied with checking "Do not ask again".
@@ -396,15 +453,78 @@ public class SolarActivity extends AppCompatActivity {
         }
     }
 
+    private void updateLoadingMessage() {
+        if (loadingMessageSnackbar == null) {
+            return;
+        }
+
+        Frame frame = arSceneView.getArFrame();
+        if (frame == null) {
+            return;
+        }
+
+        if (frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
+            return;
+        }
+
+        for (Plane plane : frame.getUpdatedTrackables(Plane.class)) {
+            if (plane.getTrackingState() == TrackingState.TRACKING) {
+                hideLoadingMessage();
+            }
+        }
+    }
+
+    /**
+     * Applies the scale and distance sliders. Slider events only record their targets in
+     * the settings, so however fast a slider is dragged the hierarchy is rescaled at most once per
+     * frame.
+     */
+    private void applySliderTargets(float deltaSeconds) {
+        if (planetScaleRatio == null) {
+            return;
+        }
+
+        SolarSettings settings = settingsStore.get();
+        if (settings.getVersion() != appliedSettingsVersion) {
+            appliedSettingsVersion = settings.getVersion();
+            planetScaleRatio.setTarget(settings.getScaleMultiplier());
+            distanceRatio.setTarget(settings.getDistanceMultiplier());
+        }
+        boolean scaleChanged = planetScaleRatio.step(deltaSeconds);
+        boolean distanceChanged = distanceRatio.step(deltaSeconds);
+
+        float ratio = planetScaleRatio.get();
+        if (scaleChanged) {
+            scratchVector.set(0.0f, 0.5f * ratio, 0.0f);
+            solarControls.setLocalPosition(scratchVector);
+            scratchVector.set(ratio * sunScale, ratio * sunScale, ratio * sunScale);
+            sunVisual.setWorldScale(scratchVector);
+            for (int x = 0; x < planetList.size(); x++) {
+                orbitDriver.setBodyScale(x, planetList.get(x).myScale * ratio);
+            }
+        }
+        if (scaleChanged || distanceChanged) {
+            // Orbit radii follow the planet scale, the distance slider stretches them on top.
+            orbitDriver.setDistanceScale(ratio / 10.0f * distanceRatio.get());
+        }
+    }
+
     private void onSingleTap(MotionEvent tap) {
         if (!hasFinishedLoading) {
             // We can't do anything yet.
             return;
         }
 
+        if (hasPlacedSolarSystem) {
+            if (!touchStartedOnNode) {
+                bodyPicker.onTap(arSceneView.getScene().getCamera(), tap);
+            }
+            return;
+        }
+
         Frame frame = arSceneView.getArFrame();
         if (frame != null) {
-            if (!hasPlacedSolarSystem && tryPlaceSolarSystem(tap, frame)) {
+            if (tryPlaceSolarSystem(tap, frame)) {
                 hasPlacedSolarSystem = true;
             }
         }
@@ -421,6 +541,14 @@ public class SolarActivity extends AppCompatActivity {
                     anchorNode.setParent(arSceneView.getScene());
                     Node solarSystem = createSolarSystem();
                     anchorNode.addChild(solarSystem);
+
+                    // Start easing from whatever the sliders were last set to.
+                    SolarSettings settings = settingsStore.get();
+                    planetScaleRatio =
+                            new EasedValue(settings.getScaleMultiplier(), SLIDER_EASING_RATE);
+                    distanceRatio =
+                            new EasedValue(settings.getDistanceMultiplier(), SLIDER_EASING_RATE);
+                    appliedSettingsVersion = settings.getVersion();
                     return true;
                 }
             }
@@ -436,26 +564,67 @@ public class SolarActivity extends AppCompatActivity {
         sun.setParent(base);
         sun.setLocalPosition(new Vector3(0.0f, 0.5f, 0.0f));
 
-        Node sunVisual = new Node();
+        // The first catalog entry is the root of the hierarchy.
+        CelestialBody sunBody = catalog.get(0);
+        sunVisual = new Node();
         sunVisual.setParent(sun);
         sunVisual.setRenderable(sunRenderable);
         sunVisual.setLocalScale(new Vector3(1f, 1f, 1f));
-        float sunScale = 0.5f;
+        sunScale = sunBody.getScale();
 
-        Node solarControls = new Node();
+        solarControls = new Node();
         solarControls.setParent(sun);
         solarControls.setRenderable(solarControlsRenderable);
         solarControls.setLocalPosition(new Vector3(0.0f, 0.25f, 0.0f));
 
         View solarControlsView = solarControlsRenderable.getView();
+
+        frameStatsOverlay.attachTo(solarControls, new Vector3(0.3f, 0.0f, 0.0f));
+        ToggleButton statsToggle = solarControlsView.findViewById(R.id.statsToggle);
+        statsToggle.setChecked(frameStatsOverlay.isShown());
+        statsToggle.setOnCheckedChangeListener(
+                (button, isChecked) -> frameStatsOverlay.setShown(isChecked));
+        solarControlsView.findViewById(R.id.statsDumpButton).setOnClickListener(v -> dumpFrameStats());
+
+        ToggleButton pauseToggle = solarControlsView.findViewById(R.id.pauseToggle);
+        pauseToggle.setChecked(settingsStore.get().isPaused());
+        pauseToggle.setOnCheckedChangeListener(
+                (button, isChecked) ->
+                        settingsStore.update(settings -> settings.withPaused(isChecked)));
+        ToggleButton reverseToggle = solarControlsView.findViewById(R.id.reverseToggle);
+        reverseToggle.setChecked(settingsStore.get().isReversed());
+        reverseToggle.setOnCheckedChangeListener(
+                (button, isChecked) ->
+                        settingsStore.update(settings -> settings.withReversed(isChecked)));
+        solarControlsView
+                .findViewById(R.id.todayButton)
+                .setOnClickListener(v -> orbitDriver.jumpToDate(System.currentTimeMillis()));
+
+        ToggleButton gravityToggle = solarControlsView.findViewById(R.id.gravityToggle);
+        gravityToggle.setChecked(settingsStore.get().isGravityEnabled());
+        gravityToggle.setOnCheckedChangeListener(
+                (button, isChecked) ->
+                        settingsStore.update(settings -> settings.withGravityEnabled(isChecked)));
+        ToggleButton labelsToggle = solarControlsView.findViewById(R.id.labelsToggle);
+        labelsToggle.setOnCheckedChangeListener(
+                (button, isChecked) -> labelRenderer.setAllVisible(isChecked));
+        View roguePlanetButton = solarControlsView.findViewById(R.id.roguePlanetButton);
+        roguePlanetButton.setOnClickListener(
+                v -> {
+                    addRoguePlanet(sun);
+                    roguePlanetButton.setEnabled(false);
+                    gravityToggle.setChecked(true);
+                });
+
         SeekBar orbitSpeedBar = solarControlsView.findViewById(R.id.orbitSpeedBar);
-        orbitSpeedBar.setProgress((int) (solarSettings.getOrbitSpeedMultiplier() * 10.0f));
+        orbitSpeedBar.setProgress((int) (settingsStore.get().getOrbitSpeedMultiplier() * 10.0f));
         orbitSpeedBar.setOnSeekBarChangeListener(
                 new SeekBar.OnSeekBarChangeListener() {
                     @Override
                     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
                         float ratio = (float) progress / (float) orbitSpeedBar.getMax();
-                        solarSettings.setOrbitSpeedMultiplier(ratio * 10.0f);
+                        settingsStore.update(
+                                settings -> settings.withOrbitSpeedMultiplier(ratio * 10.0f));
 
                     }
 
@@ -469,13 +638,14 @@ public class SolarActivity extends AppCompatActivity {
                 });
 
         SeekBar rotationSpeedBar = solarControlsView.findViewById(R.id.rotationSpeedBar);
-        rotationSpeedBar.setProgress((int) (solarSettings.getRotationSpeedMultiplier() * 10.0f));
+        rotationSpeedBar.setProgress((int) (settingsStore.get().getRotationSpeedMultiplier() * 10.0f));
         rotationSpeedBar.setOnSeekBarChangeListener(
                 new SeekBar.OnSeekBarChangeListener() {
                     @Override
                     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
                         float ratio = (float) progress / (float) rotationSpeedBar.getMax();
-                        solarSettings.setRotationSpeedMultiplier(ratio * 10.0f);
+                        settingsStore.update(
+                                settings -> settings.withRotationSpeedMultiplier(ratio * 10.0f));
                     }
 
                     @Override
@@ -488,42 +658,13 @@ public class SolarActivity extends AppCompatActivity {
                 });
 
         SeekBar planetScaleBar = solarControlsView.findViewById(R.id.scaleBar);
-        planetScaleBar.setProgress((int) (solarSettings.getScaleMultiplier() * 1.0f));
+        planetScaleBar.setProgress((int) (settingsStore.get().getScaleMultiplier() * 1.0f));
         planetScaleBar.setOnSeekBarChangeListener(
                 new SeekBar.OnSeekBarChangeListener() {
                     @Override
                     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                        //float ratio = (((float) progress) / (float) planetScaleBar.getMax());
-                        //float ratio = (float) progress / (float) planetScaleBar.getMax();
-                        float ratio = progress;
-                        float ratioDistance = progress / 10.0f;
-                        //ratio = ratio * 2.0f;
-
-                        //solarSettings.setScaleMultiplier(ratio * 10.0f);
-
-                        solarControls.setLocalPosition(new Vector3(0.0f, 0.5f * ratio, 0.0f));
-
-                        // Also need to scale the sun before because it is not in planetList.
-                        //sunVisual.setLocalScale(new Vector3(ratio * sunScale, ratio * sunScale, ratio * sunScale));
-
-                        // Trying out world scale
-                        sunVisual.setWorldScale(new Vector3(ratio * sunScale, ratio * sunScale, ratio * sunScale));
-                        for (int x = 0; x < planetList.size(); x++) {
-                            // Sets scale based off ratio
-                            //planetList.get(x).setLocalScale(new Vector3(ratio / planetList.get(x).myScale, ratio / planetList.get(x).myScale, ratio / planetList.get(x).myScale));
-
-                            //TODO: Having issues with the planets not scaling up. -> localScale is not working.
-
-                            //TODO: Added worldScale and setLocalPosition. LocalPosition is based off of a different ratio variable.
-                            //planetList.get(x).setLocalScale(new Vector3(planetList.get(x).parent.getLocalScale().x * planetList.get(x).myScale, planetList.get(x).parent.getLocalScale().y  * planetList.get(x).myScale, planetList.get(x).parent.getLocalScale().z  * planetList.get(x).myScale));
-                            //planetList.get(x).setLocalScale(new Vector3(10.0f, 10.0f, 10.0f));
-                            // planetList.get(x).setLocalScale(new Vector3(planetList.get(x).myScale, planetList.get(x).myScale, planetList.get(x).myScale));
-                            // Sets local position based off of distance from sun (x vector is changed)
-                            //planetList.get(x).setLocalPosition(new Vector3(planetList.get(x).getLocalPosition().x * ratio, planetList.get(x).getLocalPosition().y, planetList.get(x).getLocalPosition().z));
-                            planetList.get(x).setWorldScale(new Vector3(planetList.get(x).myScale * ratio, planetList.get(x).myScale * ratio, planetList.get(x).myScale * ratio));
-                            planetList.get(x).setLocalPosition(new Vector3((planetList.get(x).fromParent * AU_TO_METERS) * ratioDistance, 0.0f, 0.0f));
-                        }
-
+                        // Only record the target, applySliderTargets eases towards it once per frame.
+                        settingsStore.update(settings -> settings.withScaleMultiplier(progress));
                     }
 
                     @Override
@@ -536,18 +677,14 @@ public class SolarActivity extends AppCompatActivity {
                 });
 
         SeekBar distanceBar = solarControlsView.findViewById(R.id.distanceBar);
-        distanceBar.setProgress((int) (solarSettings.getDistanceMultiplier() * 2.0f));
+        distanceBar.setProgress(
+                (int) (settingsStore.get().getDistanceMultiplier() / 2.0f * distanceBar.getMax()));
         distanceBar.setOnSeekBarChangeListener(
                 new SeekBar.OnSeekBarChangeListener() {
                     @Override
                     public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
                         float ratio = (float) progress / (float) distanceBar.getMax();
-                        solarSettings.setDistanceMultiplier(ratio * 2.0f);
-
-                        for (int i = 0; i < planetList.size(); i++) {
-                            planetList.get(i).setLocalPosition(new Vector3(planetList.get(i).getLocalScale().x * ratio, planetList.get(i).getLocalPosition().y, planetList.get(i).getLocalPosition().z));
-
-                        }
+                        settingsStore.update(settings -> settings.withDistanceMultiplier(ratio * 2.0f));
                     }
 
                     @Override
@@ -560,57 +697,120 @@ public class SolarActivity extends AppCompatActivity {
                 });
 
         // Toggle the solar controls on and off by tapping the sun.
-        sunVisual.setOnTapListener(
-                (hitTestResult, motionEvent) -> solarControls.setEnabled(!solarControls.isEnabled()));
-
-        createPlanet("Mercury", sun, 0.4f, 47f, mercuryRenderable, 0.019f, sunVisual);
-
-        createPlanet("Venus", sun, 0.7f, 35f, venusRenderable, 0.0475f, sunVisual);
-
-        Node earth = createPlanet("Earth", sun, 1.0f, 29f, earthRenderable, 0.05f, sunVisual);
-
-        createPlanet("Moon", earth, 0.15f, 100f, lunaRenderable, 0.018f, sunVisual);
-
-        createPlanet("Mars", sun, 1.5f, 24f, marsRenderable, 0.0265f, sunVisual);
-
-        createPlanet("Jupiter", sun, 2.2f, 13f, jupiterRenderable, 0.16f, sunVisual);
-
-        createPlanet("Saturn", sun, 3.5f, 9f, saturnRenderable, 0.1325f, sunVisual);
-
-        createPlanet("Uranus", sun, 5.2f, 7f, uranusRenderable, 0.1f, sunVisual);
-
-        createPlanet("Neptune", sun, 6.1f, 5f, neptuneRenderable, 0.074f, sunVisual);
+        bodyPicker.addBody(
+                sunVisual,
+                Planet.MODEL_RADIUS,
+                motionEvent -> solarControls.setEnabled(!solarControls.isEnabled()));
+
+        // Belts of small bodies, each drawn as a few merged meshes. Their real semi-major axes are
+        // mapped onto the compressed display distances: the main belt between Mars and Jupiter and
+        // the Kuiper belt beyond Neptune.
+        createBelt(sun, BeltField.generate(
+                MAIN_BELT_SEED, 4000, 24, 2.1, 3.3, 0.2, 15.0,
+                1.7f * AU_TO_METERS, 2.0f * AU_TO_METERS, 0.004f), 0xff8c7b6b);
+        createBelt(sun, BeltField.generate(
+                KUIPER_BELT_SEED, 2000, 16, 30.0, 50.0, 0.25, 20.0,
+                6.6f * AU_TO_METERS, 8.0f * AU_TO_METERS, 0.006f), 0xff9fb4c7);
+
+        // Every catalog body also takes part in the gravity simulation, at the same index, so the
+        // catalog's parent indices can be used there as well.
+        orbitDriver.setGravity(new GravitySimulation());
+        orbitDriver.addGravityBody(sunBody.getMass(), -1, null, -1);
+
+        // Parents always come before their children in the catalog, so the hierarchy can be built
+        // in a single pass.
+        Node[] bodyNodes = new Node[catalog.size()];
+        int[] cullIndices = new int[catalog.size()];
+        bodyNodes[0] = sun;
+        cullIndices[0] = bodyCuller.addBody(sunVisual, sunVisual, Planet.MODEL_RADIUS, -1);
+        for (int i = 1; i < catalog.size(); i++) {
+            CelestialBody body = catalog.get(i);
+            Planet planet = createPlanet(body, bodyNodes[body.getParentIndex()], sunVisual);
+            bodyNodes[i] = planet;
+
+            // Culling the sun only hides its visual, so the planets are culled on their own. Moons
+            // are hidden along with their planet.
+            int cullParent = body.getParentIndex() == 0 ? -1 : cullIndices[body.getParentIndex()];
+            cullIndices[i] =
+                    bodyCuller.addBody(planet, planet.getPlanetVisual(), Planet.MODEL_RADIUS, cullParent);
+        }
 
         return base;
     }
 
-    private Node createPlanet(
-            String name,
-            Node parent,
-            float auFromParent,
-            float orbitDegreesPerSecond,
-            ModelRenderable renderable,
-            float planetScale,
-            Node theSun) {
-        // Orbit is a rotating node with no renderable positioned at the sun.
-        // The planet is positioned relative to the orbit so that it appears to rotate around the sun.
-        // This is done instead of making the sun rotate so each planet can orbit at its own speed.
-        RotatingNode orbit = new RotatingNode(solarSettings, true);
-        orbit.setDegreesPerSecond(orbitDegreesPerSecond);
-        orbit.setParent(parent);
-
-        // Create the planet and position it relative to the sun.
-        Planet planet = new Planet(this, name, planetScale, renderable, solarSettings, theSun, auFromParent);
+    private Planet createPlanet(CelestialBody body, Node parent, Node theSun) {
+        // The planet is positioned directly relative to its parent. orbitDriver evaluates its
+        // orbit every frame, so each planet still moves at its own speed without an animator.
+        Planet planet =
+                new Planet(
+                        this,
+                        body.getName(),
+                        body.getInfo(),
+                        body.getScale(),
+                        body.getModel(),
+                        renderables,
+                        labelRenderer,
+                        theSun,
+                        body.getDisplayDistanceAu(),
+                        body.getOrbit());
         planetList.add(planet);
-        planet.setParent(orbit);
-
-        //planet.setLocalPosition(new Vector3((auFromParent * AU_TO_METERS, 0.0f, 0.0f));
-        planet.setLocalPosition(new Vector3(auFromParent * AU_TO_METERS, 0.0f, 0.0f));
-
+        planet.setParent(parent);
+        int index = orbitDriver.addBody(planet, body.getDisplayDistanceAu() * AU_TO_METERS);
+        int ephemerisBody = ephemeris == null ? -1 : ephemeris.indexOf(body.getName());
+        if (ephemerisBody >= 0) {
+            orbitDriver.useEphemeris(index, ephemeris, ephemerisBody);
+        }
+        orbitDriver.addGravityBody(body.getMass(), body.getParentIndex(), body.getOrbit(), index);
+        bodyPicker.addBody(planet.getPlanetVisual(), Planet.MODEL_RADIUS, planet);
 
         return planet;
     }
 
+    /** Adds the rogue planet to the sun's system, a little before it swings past the sun. */
+    private void addRoguePlanet(Node sun) {
+        double periodDays = 365.25 * Math.pow(ROGUE_SEMI_MAJOR_AXIS_AU, 1.5);
+        // Elements are referenced to J2000, so go back from the mean anomaly it should have now.
+        double meanAnomaly =
+                ROGUE_MEAN_ANOMALY - 360.0 * orbitDriver.getSimulationDays() / periodDays;
+        OrbitalElements orbit =
+                new OrbitalElements(
+                        ROGUE_SEMI_MAJOR_AXIS_AU,
+                        ROGUE_ECCENTRICITY,
+                        25.0,
+                        60.0,
+                        300.0,
+                        meanAnomaly,
+                        periodDays);
+        CelestialBody rogue =
+                new CelestialBody(
+                        "Rogue planet",
+                        0,
+                        orbit,
+                        ROGUE_MASS,
+                        ROGUE_DISPLAY_AU,
+                        ROGUE_SCALE,
+                        "Neptune.sfb",
+                        "Five Jupiter masses passing through");
+        Planet planet = createPlanet(rogue, sun, sunVisual);
+        bodyCuller.addBody(planet, planet.getPlanetVisual(), Planet.MODEL_RADIUS, -1);
+    }
+
+  private void createBelt(Node sun, BeltField field, int argbColor) {
+    AsteroidBelt belt = new AsteroidBelt(this, field, argbColor);
+    belt.getRoot().setParent(sun);
+    orbitDriver.addBelt(belt);
+  }
+
+  /** Writes the frame stats to the app's external files directory for offline analysis. */
+  private void dumpFrameStats() {
+    File file = new File(getExternalFilesDir(null), "frame-stats_" + getCurSysDate() + ".txt");
+    try {
+      frameStatsOverlay.dump(file);
+      Toast.makeText(this, "Frame stats written to " + file, Toast.LENGTH_SHORT).show();
+    } catch (IOException e) {
+      DemoUtils.displayError(this, "Unable to write frame stats", e);
+    }
+  }
 
   private void showLoadingMessage() {
     if (loadingMessageSnackbar != null && loadingMessageSnackbar.isShownOrQueued()) {
@@ -636,142 +836,108 @@ public class SolarActivity extends AppCompatActivity {
   }
 
 
-  @Override
-  public void onActivityResult(int requestCode, int resultCode, Intent data) {
-    if (requestCode != PERMISSION_CODE) {
-      return;
-    }
-    if (resultCode != RESULT_OK) {
-      Toast.makeText(this,
-              "Screen Cast Permission Denied", Toast.LENGTH_SHORT).show();
-      mToggleButton.setChecked(false);
-      return;
-    }
-    mMediaProjection = mProjectionManager.getMediaProjection(resultCode, data);
-    mMediaProjection.registerCallback(mMediaProjectionCallback, null);
-    mVirtualDisplay = createVirtualDisplay();
-    mMediaRecorder.start();
-  }
-
   public void onToggleScreenShare(View view) {
     if (((ToggleButton) view).isChecked()) {
-      initRecorder();
-      prepareRecorder();
-      mProjectionManager = (MediaProjectionManager) getSystemService
-              (Context.MEDIA_PROJECTION_SERVICE);
-
-
+      if (!startRecording()) {
+        mToggleButton.setChecked(false);
+        return;
+      }
       mToggleButton.setBackgroundColor(Color.TRANSPARENT);
       mToggleButton.setText("   ");
-      shareScreen();
     } else {
-      //mMediaRecorder.stop();
-      mMediaRecorder.reset();
-      stopScreenSharing();
-      mToggleButton.setText("Click to record!");
-      mToggleButton.setVisibility(View.VISIBLE);
-      mToggleButton.setBackgroundColor(getResources().getColor(R.color.lightBlueTheme));
+      stopRecording();
+      showRecordButton();
     }
   }
 
-  private void shareScreen() {
-    if (mMediaProjection == null) {
-      startActivityForResult(mProjectionManager.createScreenCaptureIntent(), PERMISSION_CODE);
-      return;
-    }
-    mVirtualDisplay = createVirtualDisplay();
-    mMediaRecorder.start();
-
+  private void showRecordButton() {
+    mToggleButton.setChecked(false);
+    mToggleButton.setText("Click to record!");
+    mToggleButton.setVisibility(View.VISIBLE);
+    mToggleButton.setBackgroundColor(getResources().getColor(R.color.lightBlueTheme));
   }
 
-  private void stopScreenSharing() {
-    if (mVirtualDisplay == null) {
-      return;
+  /**
+   * Starts recording the scene into new segments of the recording storage. Frames are captured from
+   * the scene view and encoded on background threads, see RecordingPipeline, and the files are
+   * prepared on the storage's thread. Returns false if recording couldn't start.
+   */
+  private boolean startRecording() {
+    if (ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE)
+        != PackageManager.PERMISSION_GRANTED) {
+      ActivityCompat.requestPermissions(
+          this, new String[] {Manifest.permission.WRITE_EXTERNAL_STORAGE}, RC_STORAGE_PERMISSION);
+      return false;
     }
-    mVirtualDisplay.release();
-    mMediaRecorder.reset();
-    //mMediaRecorder.release();
-  }
-
-  private VirtualDisplay createVirtualDisplay() {
-    return mMediaProjection.createVirtualDisplay("MainActivity",
-            DISPLAY_WIDTH, DISPLAY_HEIGHT, mScreenDensity,
-            DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
-            mMediaRecorder.getSurface(), null /*Callbacks*/, null /*Handler*/);
-  }
-
-  private class MediaProjectionCallback extends MediaProjection.Callback {
-    @Override
-    public void onStop() {
-      if (mToggleButton.isChecked()) {
-        mToggleButton.setChecked(false);
-        mMediaRecorder.stop();
-        //mMediaRecorder.reset();
-      }
-      mMediaProjection = null;
-      stopScreenSharing();
+    if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState())) {
+      Toast.makeText(this, "Failed to get External Storage", Toast.LENGTH_SHORT).show();
+      return false;
     }
+
+    int width = recordingSize(DISPLAY_WIDTH);
+    int height = recordingSize(DISPLAY_HEIGHT);
+    int bitRate = (int) (width * height * RECORDING_FRAME_RATE * RECORDING_BITS_PER_PIXEL);
+    long segmentBytes =
+        (long) (bitRate / 8.0 * RECORDING_SEGMENT_SECONDS * RECORDING_SEGMENT_HEADROOM);
+    SegmentedFrameEncoder encoder =
+        new SegmentedFrameEncoder(
+            recordingStorage,
+            file -> new SurfaceVideoEncoder(file, RECORDING_FRAME_RATE, bitRate),
+            TimeUnit.SECONDS.toNanos(RECORDING_SEGMENT_SECONDS),
+            segmentBytes);
+    RecordingPipeline pipeline =
+        new RecordingPipeline(encoder, width, height, RECORDING_BUFFER_COUNT);
+    pipeline.setOnFinishedListener(
+        error -> runOnUiThread(() -> onRecordingFinished(pipeline, error)));
+    pipeline.start();
+
+    recordingPipeline = pipeline;
+    sceneCapturer = new SceneCapturer(arSceneView, pipeline, RECORDING_FRAME_RATE);
+    arSceneView.getScene().addOnUpdateListener(sceneCapturer);
+    return true;
   }
 
-  private void prepareRecorder() {
-    try {
-      mMediaRecorder.prepare();
-    } catch (IllegalStateException | IOException e) {
-      e.printStackTrace();
-      finish();
+  /** Stops capturing frames. The file is finished in the background, see onRecordingFinished. */
+  private void stopRecording() {
+    if (recordingPipeline == null) {
+      return;
     }
+    arSceneView.getScene().removeOnUpdateListener(sceneCapturer);
+    sceneCapturer.release();
+    recordingPipeline.stop();
+    sceneCapturer = null;
+    recordingPipeline = null;
   }
 
-  public String getFilePath() {
-    // DCIM/Camera
-    final String directory = Environment.getExternalStorageDirectory() + File.separator + "Recordings";
-    if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState())) {
-      Toast.makeText(this, "Failed to get External Storage", Toast.LENGTH_SHORT).show();
-      return null;
+  private void onRecordingFinished(RecordingPipeline pipeline, Exception error) {
+    if (pipeline == recordingPipeline) {
+      // The encoder failed while recording.
+      stopRecording();
+      showRecordButton();
     }
-    final File folder = new File(directory);
-    boolean success = true;
-    if (!folder.exists()) {
-      success = folder.mkdir();
-    }
-    String filePath;
-    if (success) {
-      String videoName = ("capture_" + getCurSysDate() + ".mp4");
-      filePath = directory + File.separator + videoName;
+    Log.i(
+        TAG,
+        "Recording finished: "
+            + pipeline.getEncodedFrames()
+            + " frames encoded, "
+            + pipeline.getDownscaledFrames()
+            + " downscaled, "
+            + pipeline.getDroppedFrames()
+            + " dropped");
+    if (error != null) {
+      DemoUtils.displayError(this, "Recording failed", error);
     } else {
-      Toast.makeText(this, "Failed to create Recordings directory", Toast.LENGTH_SHORT).show();
-      return null;
+      Toast.makeText(
+              this, "Saved recording to " + recordingStorage.getDirectory(), Toast.LENGTH_LONG)
+          .show();
     }
-    return filePath;
   }
 
-  public String getCurSysDate() {
-    return new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+  private static int recordingSize(int displaySize) {
+    return Math.max(16, displaySize / 2 / 16 * 16);
   }
 
-  private void initRecorder() {
-    int YOUR_REQUEST_CODE = 200; // could be something else..
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-      ActivityCompat.requestPermissions(this, new String[]{android.Manifest.permission.RECORD_AUDIO, android.Manifest.permission.WRITE_EXTERNAL_STORAGE},
-              YOUR_REQUEST_CODE);
-
-
-      if (mMediaRecorder == null) {
-        mMediaRecorder = new MediaRecorder();
-      }
-      //CamcorderProfile cpHigh = CamcorderProfile.get(CamcorderProfile.QUALITY_1080P);
-
-      mMediaRecorder.setAudioSource(MediaRecorder.AudioSource.DEFAULT);
-      mMediaRecorder.setVideoSource(MediaRecorder.VideoSource.SURFACE);
-      mMediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-      mMediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-      mMediaRecorder.setVideoEncoder(MediaRecorder.VideoEncoder.DEFAULT);
-      mMediaRecorder.setVideoSize(DISPLAY_WIDTH, DISPLAY_HEIGHT);
-      mMediaRecorder.setVideoFrameRate(30);
-      mMediaRecorder.setOutputFile(getFilePath());
-      mMediaRecorder.setVideoEncodingBitRate(10000000);
-
-      //mMediaRecorder.setOutputFile(getFilePath());
-    }
+  public String getCurSysDate() {
+    return new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
   }
 }
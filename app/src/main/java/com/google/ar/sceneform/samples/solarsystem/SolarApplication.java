@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Holds everything that outlives a {@link SolarActivity}: the catalog, the ephemeris, the loaded
+ * models and the state of the simulation.
+ *
+ * <p>A recreated activity takes its {@link RenderableRepository} from here, so models that were
+ * already decoded are reattached instead of loaded again. The settings and the simulation time are
+ * kept as well, and the solar system continues where it was once it is placed again. Nodes and
+ * anchors belong to the activity's AR session and are rebuilt with it.
+ *
+ * <p>Everything is created on first use. All methods must be called on the UI thread.
+ */
+public class SolarApplication extends Application {
+  private static final String TAG = SolarApplication.class.getSimpleName();
+
+  // Asset describing every body of the solar system, see CelestialCatalog.
+  private static final String CATALOG_ASSET = "solar_system.catalog";
+
+  // Precomputed positions of the catalog bodies, generated by the :ephemeris module. Bodies fall
+  // back to their catalog orbits where it's missing or doesn't cover the simulation time.
+  private static final String EPHEMERIS_ASSET = "solar_system.ephemeris";
+
+  private CelestialCatalog catalog;
+  private Ephemeris ephemeris;
+  private boolean ephemerisLoaded = false;
+  private RenderableRepository renderables;
+
+  // Written by the sliders, read by everything they control.
+  private final SolarSettingsStore settingsStore = new SolarSettingsStore();
+
+  // Simulation time when the last activity was destroyed, in days since J2000. NaN until then.
+  private double simulationDays = Double.NaN;
+
+  /** Returns the catalog, reading it on first use. */
+  public CelestialCatalog getCatalog() throws IOException {
+    if (catalog == null) {
+      catalog = loadCatalog();
+    }
+    return catalog;
+  }
+
+  /**
+   * Returns the ephemeris, mapping it on first use. Returns null if it's missing or unreadable, the
+   * orbits from the catalog are used then.
+   */
+  public Ephemeris getEphemeris() {
+    if (!ephemerisLoaded) {
+      ephemeris = loadEphemeris();
+      ephemerisLoaded = true;
+    }
+    return ephemeris;
+  }
+
+  /**
+   * Returns the model cache shared by every activity. It holds roughly an eighth of the app's heap
+   * class, measured by asset size.
+   */
+  public RenderableRepository getRenderables() {
+    if (renderables == null) {
+      int memoryClassMb = ((ActivityManager) getSystemService(ACTIVITY_SERVICE)).getMemoryClass();
+      renderables = new RenderableRepository(this, memoryClassMb * 1024L * 1024L / 8);
+    }
+    return renderables;
+  }
+
+  public SolarSettingsStore getSettingsStore() {
+    return settingsStore;
+  }
+
+  /** Simulation time the next activity should start at, or NaN to start at J2000. */
+  public double getSimulationDays() {
+    return simulationDays;
+  }
+
+  /** Keeps the simulation time of an activity that is going away. */
+  public void setSimulationDays(double simulationDays) {
+    this.simulationDays = simulationDays;
+  }
+
+  /**
+   * Reads the catalog asset. The asset is stored uncompressed so it can be memory-mapped straight
+   * from the APK; if it is compressed anyway, it is read through a buffered channel instead.
+   */
+  private CelestialCatalog loadCatalog() throws IOException {
+    AssetFileDescriptor descriptor;
+    try {
+      descriptor = getAssets().openFd(CATALOG_ASSET);
+    } catch (FileNotFoundException e) {
+      // openFd only works for uncompressed assets.
+      try (ReadableByteChannel channel = Channels.newChannel(getAssets().open(CATALOG_ASSET))) {
+        return CelestialCatalog.read(channel);
+      }
+    }
+
+    // Closing the stream also closes the descriptor.
+    try (FileInputStream stream = descriptor.createInputStream()) {
+      return CelestialCatalog.read(
+          stream.getChannel(), descriptor.getStartOffset(), descriptor.getLength());
+    }
+  }
+
+  /** Maps the ephemeris asset, which is stored uncompressed for that. */
+  private Ephemeris loadEphemeris() {
+    try {
+      AssetFileDescriptor descriptor = getAssets().openFd(EPHEMERIS_ASSET);
+      // The mapping stays valid after the stream and descriptor are closed.
+      try (FileInputStream stream = descriptor.createInputStream()) {
+        return Ephemeris.read(
+            stream.getChannel(), descriptor.getStartOffset(), descriptor.getLength());
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      Log.w(TAG, "Ephemeris unavailable, using catalog orbits", e);
+      return null;
+    }
+  }
+}
@@ -15,38 +15,186 @@
  */
 package com.google.ar.sceneform.samples.solarsystem;
 
-/** Planet rotation and speed settings */
-public class SolarSettings {
-  private float orbitSpeedMultiplier = 1.0f;
-  private float rotationSpeedMultiplier = 1.0f;
-  private float scaleMultiplier = 1.0f;
-  private float distanceMultiplier = 1.0f;
-
-  public void setOrbitSpeedMultiplier(float orbitSpeedMultiplier) {
+/**
+ * Planet rotation, speed, simulation clock and physics settings.
+ *
+ * <p>Settings are immutable snapshots. Changes are made with the {@code with} methods and published
+ * through a {@link SolarSettingsStore}, which also numbers them: a consumer only needs to compare
+ * {@link #getVersion} with the last version it saw to know whether anything changed.
+ */
+public final class SolarSettings {
+  /** The settings the app starts with. */
+  public static final SolarSettings DEFAULT =
+      new SolarSettings(0, 1.0f, 1.0f, 1.0f, 1.0f, false, false, false);
+
+  private final long version;
+  private final float orbitSpeedMultiplier;
+  private final float rotationSpeedMultiplier;
+  private final float scaleMultiplier;
+  private final float distanceMultiplier;
+  private final boolean paused;
+  private final boolean reversed;
+  private final boolean gravityEnabled;
+
+  private SolarSettings(
+      long version,
+      float orbitSpeedMultiplier,
+      float rotationSpeedMultiplier,
+      float scaleMultiplier,
+      float distanceMultiplier,
+      boolean paused,
+      boolean reversed,
+      boolean gravityEnabled) {
+    this.version = version;
     this.orbitSpeedMultiplier = orbitSpeedMultiplier;
+    this.rotationSpeedMultiplier = rotationSpeedMultiplier;
+    this.scaleMultiplier = scaleMultiplier;
+    this.distanceMultiplier = distanceMultiplier;
+    this.paused = paused;
+    this.reversed = reversed;
+    this.gravityEnabled = gravityEnabled;
   }
 
-  public float getOrbitSpeedMultiplier() {
-    return orbitSpeedMultiplier;
+  /** Increases by one every time a {@link SolarSettingsStore} publishes a change. */
+  public long getVersion() {
+    return version;
   }
 
-  public void setRotationSpeedMultiplier(float rotationSpeedMultiplier) {
-    this.rotationSpeedMultiplier = rotationSpeedMultiplier;
+  public float getOrbitSpeedMultiplier() {
+    return orbitSpeedMultiplier;
   }
 
   public float getRotationSpeedMultiplier() {
     return rotationSpeedMultiplier;
   }
 
-  public void setScaleMultiplier(float scaleMultiplier){
-    this.scaleMultiplier = scaleMultiplier;
+  public float getScaleMultiplier() {
+    return scaleMultiplier;
   }
 
-  public float getScaleMultiplier(){ return scaleMultiplier; }
+  public float getDistanceMultiplier() {
+    return distanceMultiplier;
+  }
 
-  public void setDistanceMultiplier(float distanceMultiplier){
-    this.distanceMultiplier = distanceMultiplier;
+  /** True if the simulation clock is stopped. */
+  public boolean isPaused() {
+    return paused;
+  }
+
+  /** True if the simulation clock runs backwards. */
+  public boolean isReversed() {
+    return reversed;
+  }
+
+  /** True if the bodies move under their mutual gravity instead of along fixed orbits. */
+  public boolean isGravityEnabled() {
+    return gravityEnabled;
+  }
+
+  public SolarSettings withOrbitSpeedMultiplier(float orbitSpeedMultiplier) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  public SolarSettings withRotationSpeedMultiplier(float rotationSpeedMultiplier) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  public SolarSettings withScaleMultiplier(float scaleMultiplier) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  public SolarSettings withDistanceMultiplier(float distanceMultiplier) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
   }
 
-  public float getDistanceMultiplier(){ return distanceMultiplier; }
+  public SolarSettings withPaused(boolean paused) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  public SolarSettings withReversed(boolean reversed) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  public SolarSettings withGravityEnabled(boolean gravityEnabled) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  SolarSettings withVersion(long version) {
+    return new SolarSettings(
+        version,
+        orbitSpeedMultiplier,
+        rotationSpeedMultiplier,
+        scaleMultiplier,
+        distanceMultiplier,
+        paused,
+        reversed,
+        gravityEnabled);
+  }
+
+  /** Returns true if every setting, ignoring the version, equals those of {@code other}. */
+  public boolean hasSameValues(SolarSettings other) {
+    return orbitSpeedMultiplier == other.orbitSpeedMultiplier
+        && rotationSpeedMultiplier == other.rotationSpeedMultiplier
+        && scaleMultiplier == other.scaleMultiplier
+        && distanceMultiplier == other.distanceMultiplier
+        && paused == other.paused
+        && reversed == other.reversed
+        && gravityEnabled == other.gravityEnabled;
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Publishes {@link SolarSettings} snapshots through a single atomic reference.
+ *
+ * <p>Readers on any thread call {@link #get} and see a consistent snapshot. Writers call {@link
+ * #update}, so a change to several settings is published at once. Every published change gets the
+ * next version number and is passed to the registered listeners.
+ */
+public class SolarSettingsStore {
+  /** Notified after a change was published, on the thread that made the change. */
+  public interface OnChangeListener {
+    void onSettingsChanged(SolarSettings settings);
+  }
+
+  private final AtomicReference<SolarSettings> current;
+  private final CopyOnWriteArrayList<OnChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+  public SolarSettingsStore() {
+    this(SolarSettings.DEFAULT);
+  }
+
+  public SolarSettingsStore(SolarSettings initial) {
+    current = new AtomicReference<>(initial);
+  }
+
+  /** Returns the latest snapshot. */
+  public SolarSettings get() {
+    return current.get();
+  }
+
+  /**
+   * Publishes the result of applying {@code change} to the latest snapshot. If another thread
+   * publishes first, {@code change} is applied again to its result, so it must not have side
+   * effects.
+   *
+   * @return the snapshot that is now current; unchanged if {@code change} changed no value
+   */
+  public SolarSettings update(UnaryOperator<SolarSettings> change) {
+    while (true) {
+      SolarSettings previous = current.get();
+      SolarSettings changed = change.apply(previous);
+      if (changed.hasSameValues(previous)) {
+        return previous;
+      }
+      SolarSettings next = changed.withVersion(previous.getVersion() + 1);
+      if (current.compareAndSet(previous, next)) {
+        for (OnChangeListener listener : listeners) {
+          listener.onSettingsChanged(next);
+        }
+        return next;
+      }
+    }
+  }
+
+  public void addOnChangeListener(OnChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeOnChangeListener(OnChangeListener listener) {
+    listeners.remove(listener);
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.Arrays;
+
+/**
+ * Bounding sphere hierarchy over a set of moving spheres, answering ray queries.
+ *
+ * <p>Items are updated in place with {@link #setItem} and the tree is refit with {@link #refit},
+ * which only recomputes the node spheres bottom-up. Because bodies drift apart as they orbit, the
+ * topology is rebuilt from scratch every {@link #REBUILD_INTERVAL} refits. Items with a radius of
+ * zero are never hit. Nothing is allocated unless the number of items changes.
+ */
+public class SphereTree {
+  private static final int REBUILD_INTERVAL = 120;
+
+  private int itemCount = 0;
+  private float[] items = new float[0];
+
+  // Nodes are stored in pre-order, so children always come after their parent. Leaves have no
+  // children and reference a single item.
+  private int nodeCount = 0;
+  private int[] nodeLeft = new int[0];
+  private int[] nodeRight = new int[0];
+  private int[] nodeItem = new int[0];
+  private float[] nodeSpheres = new float[0];
+
+  private int[] order = new int[0];
+  private int[] stack = new int[0];
+  private boolean needsRebuild = true;
+  private int refitsSinceBuild = 0;
+
+  /** Sets the number of items. Existing items keep their values. */
+  public void setItemCount(int count) {
+    if (count == itemCount) {
+      return;
+    }
+    itemCount = count;
+    items = Arrays.copyOf(items, count * 4);
+    int maxNodes = Math.max(1, 2 * count - 1);
+    nodeLeft = new int[maxNodes];
+    nodeRight = new int[maxNodes];
+    nodeItem = new int[maxNodes];
+    nodeSpheres = new float[maxNodes * 4];
+    order = new int[count];
+    stack = new int[maxNodes];
+    needsRebuild = true;
+  }
+
+  public int getItemCount() {
+    return itemCount;
+  }
+
+  /** Sets the bounding sphere of an item. Takes effect on the next {@link #refit}. */
+  public void setItem(int item, float x, float y, float z, float radius) {
+    int i = item * 4;
+    items[i] = x;
+    items[i + 1] = y;
+    items[i + 2] = z;
+    items[i + 3] = radius;
+  }
+
+  /** Recomputes the node spheres from the current item spheres. */
+  public void refit() {
+    if (itemCount == 0) {
+      return;
+    }
+    if (needsRebuild || refitsSinceBuild >= REBUILD_INTERVAL) {
+      for (int i = 0; i < itemCount; i++) {
+        order[i] = i;
+      }
+      nodeCount = 0;
+      build(0, itemCount);
+      needsRebuild = false;
+      refitsSinceBuild = 0;
+    }
+    refitsSinceBuild++;
+
+    for (int node = nodeCount - 1; node >= 0; node--) {
+      int n = node * 4;
+      if (nodeLeft[node] < 0) {
+        System.arraycopy(items, nodeItem[node] * 4, nodeSpheres, n, 4);
+      } else {
+        enclose(nodeLeft[node] * 4, nodeRight[node] * 4, n);
+      }
+    }
+  }
+
+  /**
+   * Returns the item whose sphere a ray enters first, or -1 if it misses every item.
+   *
+   * @param ox ray origin
+   * @param dx normalized ray direction
+   */
+  public int raycast(float ox, float oy, float oz, float dx, float dy, float dz) {
+    if (nodeCount == 0) {
+      return -1;
+    }
+
+    int bestItem = -1;
+    float bestDistance = Float.POSITIVE_INFINITY;
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+      float distance = intersect(nodeSpheres, node * 4, ox, oy, oz, dx, dy, dz);
+      if (distance >= bestDistance) {
+        // Missed, or can't contain anything closer than the best hit so far.
+        continue;
+      }
+      if (nodeLeft[node] < 0) {
+        bestItem = nodeItem[node];
+        bestDistance = distance;
+      } else {
+        stack[stackSize++] = nodeLeft[node];
+        stack[stackSize++] = nodeRight[node];
+      }
+    }
+    return bestItem;
+  }
+
+  /** Builds the subtree over order[start, end) and returns its node index. */
+  private int build(int start, int end) {
+    int node = nodeCount++;
+    if (end - start == 1) {
+      nodeLeft[node] = -1;
+      nodeRight[node] = -1;
+      nodeItem[node] = order[start];
+      return node;
+    }
+
+    // Split at the median along the axis with the largest spread of centers.
+    float minX = Float.POSITIVE_INFINITY;
+    float minY = Float.POSITIVE_INFINITY;
+    float minZ = Float.POSITIVE_INFINITY;
+    float maxX = Float.NEGATIVE_INFINITY;
+    float maxY = Float.NEGATIVE_INFINITY;
+    float maxZ = Float.NEGATIVE_INFINITY;
+    for (int i = start; i < end; i++) {
+      int item = order[i] * 4;
+      minX = Math.min(minX, items[item]);
+      maxX = Math.max(maxX, items[item]);
+      minY = Math.min(minY, items[item + 1]);
+      maxY = Math.max(maxY, items[item + 1]);
+      minZ = Math.min(minZ, items[item + 2]);
+      maxZ = Math.max(maxZ, items[item + 2]);
+    }
+    float spreadX = maxX - minX;
+    float spreadY = maxY - minY;
+    float spreadZ = maxZ - minZ;
+    int axis = spreadX >= spreadY && spreadX >= spreadZ ? 0 : (spreadY >= spreadZ ? 1 : 2);
+
+    int middle = (start + end) >>> 1;
+    select(start, end - 1, middle, axis);
+    nodeItem[node] = -1;
+    nodeLeft[node] = build(start, middle);
+    nodeRight[node] = build(middle, end);
+    return node;
+  }
+
+  /** Partially sorts order[left, right] so order[k] holds the k-th smallest center on an axis. */
+  private void select(int left, int right, int k, int axis) {
+    while (left < right) {
+      float pivot = items[order[(left + right) >>> 1] * 4 + axis];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (items[order[i] * 4 + axis] < pivot) {
+          i++;
+        }
+        while (items[order[j] * 4 + axis] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int swap = order[i];
+          order[i] = order[j];
+          order[j] = swap;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /** Writes the smallest sphere enclosing the node spheres at a and b to out. */
+  private void enclose(int a, int b, int out) {
+    float[] s = nodeSpheres;
+    float dx = s[b] - s[a];
+    float dy = s[b + 1] - s[a + 1];
+    float dz = s[b + 2] - s[a + 2];
+    float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    float ra = s[a + 3];
+    float rb = s[b + 3];
+    if (distance + rb <= ra) {
+      System.arraycopy(s, a, s, out, 4);
+    } else if (distance + ra <= rb) {
+      System.arraycopy(s, b, s, out, 4);
+    } else {
+      float radius = (distance + ra + rb) * 0.5f;
+      float t = (radius - ra) / distance;
+      s[out] = s[a] + dx * t;
+      s[out + 1] = s[a + 1] + dy * t;
+      s[out + 2] = s[a + 2] + dz * t;
+      s[out + 3] = radius;
+    }
+  }
+
+  /** Returns the distance along a ray to where it enters a sphere, or infinity if it misses. */
+  private static float intersect(
+      float[] spheres, int s, float ox, float oy, float oz, float dx, float dy, float dz) {
+    float cx = spheres[s] - ox;
+    float cy = spheres[s + 1] - oy;
+    float cz = spheres[s + 2] - oz;
+    float radius = spheres[s + 3];
+    if (radius <= 0.0f) {
+      return Float.POSITIVE_INFINITY;
+    }
+    float along = cx * dx + cy * dy + cz * dz;
+    float centerDistanceSquared = cx * cx + cy * cy + cz * cz;
+    float radiusSquared = radius * radius;
+    if (centerDistanceSquared <= radiusSquared) {
+      // The ray starts inside the sphere.
+      return 0.0f;
+    }
+    float offAxisSquared = centerDistanceSquared - along * along;
+    if (along < 0.0f || offAxisSquared > radiusSquared) {
+      return Float.POSITIVE_INFINITY;
+    }
+    return along - (float) Math.sqrt(radiusSquared - offAxisSquared);
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.view.Surface;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Encodes frames to an H.264 MP4 file. Frames are drawn with OpenGL ES onto the input surface of a
+ * hardware video encoder, scaled up to the full recording size if they were downscaled, and stamped
+ * with their capture time so the video plays back at the pace they were captured at.
+ *
+ * <p>Every method must be called on the same thread, which holds the encoder's EGL context from
+ * {@link #start} to {@link #stop}.
+ *
+ * <p>The file may already exist, like a preallocated segment from {@link RecordingStorage}. It's
+ * overwritten from the start and cut off after the last MP4 box once the recording is finished.
+ */
+public class SurfaceVideoEncoder implements FrameEncoder {
+  private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+  private static final int I_FRAME_INTERVAL_SECONDS = 1;
+  private static final long DEQUEUE_TIMEOUT_US = 10_000;
+  // How long stop waits for the encoder to flush its last frames before giving up on them.
+  private static final long END_OF_STREAM_TIMEOUT_NANOS = 2_000_000_000L;
+
+  // EGL_RECORDABLE_ANDROID, which EGL14 doesn't declare. Required for surfaces fed to an encoder.
+  private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+  private static final String VERTEX_SHADER =
+      "attribute vec4 aPosition;\n"
+          + "attribute vec2 aTexCoord;\n"
+          + "varying vec2 vTexCoord;\n"
+          + "void main() {\n"
+          + "  gl_Position = aPosition;\n"
+          + "  vTexCoord = aTexCoord;\n"
+          + "}\n";
+  private static final String FRAGMENT_SHADER =
+      "precision mediump float;\n"
+          + "uniform sampler2D uTexture;\n"
+          + "varying vec2 vTexCoord;\n"
+          + "void main() {\n"
+          + "  gl_FragColor = texture2D(uTexture, vTexCoord);\n"
+          + "}\n";
+
+  // x, y, u, v of a quad covering the surface as a triangle strip. Frames store their top row
+  // first, which the texture holds at v = 0.
+  private static final float[] QUAD = {
+    -1.0f, -1.0f, 0.0f, 1.0f,
+    1.0f, -1.0f, 1.0f, 1.0f,
+    -1.0f, 1.0f, 0.0f, 0.0f,
+    1.0f, 1.0f, 1.0f, 0.0f,
+  };
+  private static final int QUAD_STRIDE_BYTES = 4 * 4;
+
+  private final File file;
+  private final int frameRate;
+  private final int bitRate;
+
+  private MediaCodec codec;
+  private Surface inputSurface;
+  private RandomAccessFile output;
+  private MediaMuxer muxer;
+  private int trackIndex = -1;
+  private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+  private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+  private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+  private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+  private int program;
+  private int texture;
+  // Size of the texture's storage, reallocated when the frame size changes.
+  private int textureWidth;
+  private int textureHeight;
+
+  /**
+   * @param file the MP4 file to write
+   * @param frameRate the expected number of frames per second
+   * @param bitRate the target bit rate, in bits per second
+   */
+  public SurfaceVideoEncoder(File file, int frameRate, int bitRate) {
+    this.file = file;
+    this.frameRate = frameRate;
+    this.bitRate = bitRate;
+  }
+
+  @Override
+  public void start(int width, int height) throws IOException {
+    MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+    format.setInteger(
+        MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+    format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+    format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+    format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SECONDS);
+
+    codec = MediaCodec.createEncoderByType(MIME_TYPE);
+    codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+    inputSurface = codec.createInputSurface();
+    codec.start();
+    // Opening a path would truncate the file, the descriptor keeps the preallocated space.
+    output = new RandomAccessFile(file, "rw");
+    muxer = new MediaMuxer(output.getFD(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    startEgl();
+    startGl(width, height);
+  }
+
+  @Override
+  public void encode(FrameBuffer frame) throws IOException {
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+    if (width != textureWidth || height != textureHeight) {
+      GLES20.glTexImage2D(
+          GLES20.GL_TEXTURE_2D,
+          0,
+          GLES20.GL_RGBA,
+          width,
+          height,
+          0,
+          GLES20.GL_RGBA,
+          GLES20.GL_UNSIGNED_BYTE,
+          frame.getPixels());
+      textureWidth = width;
+      textureHeight = height;
+    } else {
+      GLES20.glTexSubImage2D(
+          GLES20.GL_TEXTURE_2D,
+          0,
+          0,
+          0,
+          width,
+          height,
+          GLES20.GL_RGBA,
+          GLES20.GL_UNSIGNED_BYTE,
+          frame.getPixels());
+    }
+    GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+    // The encoder takes the frame's presentation time from the surface, not from when it arrives.
+    EGLExt.eglPresentationTimeANDROID(eglDisplay, eglSurface, frame.getTimestampNanos());
+    if (!EGL14.eglSwapBuffers(eglDisplay, eglSurface)) {
+      throw new IOException("Unable to submit a frame to the encoder: " + eglError());
+    }
+    drain(false);
+  }
+
+  /** Also releases whatever was set up if {@link #start} failed partway. */
+  @Override
+  public void stop() throws IOException {
+    try {
+      // Without a muxer, start failed and there is nothing to flush.
+      if (codec != null && muxer != null) {
+        codec.signalEndOfInputStream();
+        drain(true);
+      }
+    } finally {
+      releaseEgl();
+      if (codec != null) {
+        try {
+          codec.stop();
+        } catch (IllegalStateException e) {
+          // The codec was never started.
+        }
+        codec.release();
+        codec = null;
+      }
+      if (inputSurface != null) {
+        inputSurface.release();
+        inputSurface = null;
+      }
+      if (muxer != null) {
+        if (trackIndex >= 0) {
+          muxer.stop();
+        }
+        muxer.release();
+        muxer = null;
+      }
+      if (output != null) {
+        try {
+          FileChannel channel = output.getChannel();
+          channel.truncate(endOfBoxes(channel));
+        } finally {
+          output.close();
+          output = null;
+        }
+      }
+    }
+  }
+
+  /** Creates an EGL context and makes it current on a window surface for the encoder's input. */
+  private void startEgl() throws IOException {
+    eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+    int[] version = new int[2];
+    if (!EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
+      throw new IOException("Unable to initialize EGL: " + eglError());
+    }
+    int[] configAttributes = {
+      EGL14.EGL_RED_SIZE, 8,
+      EGL14.EGL_GREEN_SIZE, 8,
+      EGL14.EGL_BLUE_SIZE, 8,
+      EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+      EGL_RECORDABLE_ANDROID, 1,
+      EGL14.EGL_NONE
+    };
+    EGLConfig[] configs = new EGLConfig[1];
+    int[] configCount = new int[1];
+    if (!EGL14.eglChooseConfig(
+            eglDisplay, configAttributes, 0, configs, 0, configs.length, configCount, 0)
+        || configCount[0] == 0) {
+      throw new IOException("No recordable EGL config: " + eglError());
+    }
+    int[] contextAttributes = {EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE};
+    eglContext =
+        EGL14.eglCreateContext(eglDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttributes, 0);
+    if (eglContext == EGL14.EGL_NO_CONTEXT) {
+      throw new IOException("Unable to create an EGL context: " + eglError());
+    }
+    int[] surfaceAttributes = {EGL14.EGL_NONE};
+    eglSurface =
+        EGL14.eglCreateWindowSurface(eglDisplay, configs[0], inputSurface, surfaceAttributes, 0);
+    if (eglSurface == EGL14.EGL_NO_SURFACE) {
+      throw new IOException("Unable to create the encoder's EGL surface: " + eglError());
+    }
+    if (!EGL14.eglMakeCurrent(eglDisplay, eglSurface, eglSurface, eglContext)) {
+      throw new IOException("Unable to make the encoder's EGL context current: " + eglError());
+    }
+  }
+
+  /** Sets up the texture and the program that draw a frame over the whole surface. */
+  private void startGl(int width, int height) throws IOException {
+    program = GLES20.glCreateProgram();
+    GLES20.glAttachShader(program, compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER));
+    GLES20.glAttachShader(program, compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+    GLES20.glLinkProgram(program);
+    int[] status = new int[1];
+    GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+    if (status[0] == 0) {
+      throw new IOException(
+          "Unable to link the frame program: " + GLES20.glGetProgramInfoLog(program));
+    }
+    GLES20.glUseProgram(program);
+
+    FloatBuffer quad =
+        ByteBuffer.allocateDirect(QUAD.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    quad.put(QUAD);
+    int position = GLES20.glGetAttribLocation(program, "aPosition");
+    int texCoord = GLES20.glGetAttribLocation(program, "aTexCoord");
+    quad.position(0);
+    GLES20.glVertexAttribPointer(position, 2, GLES20.GL_FLOAT, false, QUAD_STRIDE_BYTES, quad);
+    GLES20.glEnableVertexAttribArray(position);
+    quad.position(2);
+    GLES20.glVertexAttribPointer(texCoord, 2, GLES20.GL_FLOAT, false, QUAD_STRIDE_BYTES, quad);
+    GLES20.glEnableVertexAttribArray(texCoord);
+
+    int[] textures = new int[1];
+    GLES20.glGenTextures(1, textures, 0);
+    texture = textures[0];
+    GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+    GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+    GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+    GLES20.glTexParameteri(
+        GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+    GLES20.glTexParameteri(
+        GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+    GLES20.glUniform1i(GLES20.glGetUniformLocation(program, "uTexture"), 0);
+    GLES20.glViewport(0, 0, width, height);
+  }
+
+  private static int compileShader(int type, String source) throws IOException {
+    int shader = GLES20.glCreateShader(type);
+    GLES20.glShaderSource(shader, source);
+    GLES20.glCompileShader(shader);
+    int[] status = new int[1];
+    GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+    if (status[0] == 0) {
+      String log = GLES20.glGetShaderInfoLog(shader);
+      GLES20.glDeleteShader(shader);
+      throw new IOException("Unable to compile a frame shader: " + log);
+    }
+    return shader;
+  }
+
+  /**
+   * Destroys the GL objects and the EGL context and surface. The display stays initialized, it's
+   * shared with the renderer.
+   */
+  private void releaseEgl() {
+    if (eglDisplay == EGL14.EGL_NO_DISPLAY) {
+      return;
+    }
+    if (eglContext != EGL14.EGL_NO_CONTEXT && eglSurface != EGL14.EGL_NO_SURFACE) {
+      GLES20.glDeleteTextures(1, new int[] {texture}, 0);
+      GLES20.glDeleteProgram(program);
+    }
+    EGL14.eglMakeCurrent(
+        eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+    if (eglSurface != EGL14.EGL_NO_SURFACE) {
+      EGL14.eglDestroySurface(eglDisplay, eglSurface);
+      eglSurface = EGL14.EGL_NO_SURFACE;
+    }
+    if (eglContext != EGL14.EGL_NO_CONTEXT) {
+      EGL14.eglDestroyContext(eglDisplay, eglContext);
+      eglContext = EGL14.EGL_NO_CONTEXT;
+    }
+    EGL14.eglReleaseThread();
+    eglDisplay = EGL14.EGL_NO_DISPLAY;
+  }
+
+  private static String eglError() {
+    return "EGL error 0x" + Integer.toHexString(EGL14.eglGetError());
+  }
+
+  /**
+   * Returns where the last complete top-level MP4 box ends. Whatever follows is left over from
+   * preallocation, which starts with a zero box size.
+   */
+  private static long endOfBoxes(FileChannel channel) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(16);
+    long size = channel.size();
+    long position = 0;
+    while (position + 8 <= size) {
+      header.clear();
+      header.limit(8);
+      if (!readFully(channel, header, position)) {
+        break;
+      }
+      long boxSize = header.getInt(0) & 0xffffffffL;
+      if (boxSize == 1) {
+        // The real size follows the type as a 64 bit value.
+        header.limit(16);
+        if (!readFully(channel, header, position)) {
+          break;
+        }
+        boxSize = header.getLong(8);
+      }
+      if (boxSize < 8 || position + boxSize > size) {
+        break;
+      }
+      position += boxSize;
+    }
+    return position;
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes every encoded frame that is ready to the muxer. At the end of the stream, waits for the
+   * encoder to flush the rest, up to {@link #END_OF_STREAM_TIMEOUT_NANOS}; frames it hasn't
+   * produced by then are lost.
+   */
+  private void drain(boolean endOfStream) {
+    long deadlineNanos = System.nanoTime() + END_OF_STREAM_TIMEOUT_NANOS;
+    while (true) {
+      int index = codec.dequeueOutputBuffer(bufferInfo, endOfStream ? DEQUEUE_TIMEOUT_US : 0);
+      if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+        if (!endOfStream || System.nanoTime() - deadlineNanos >= 0) {
+          return;
+        }
+      } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+        trackIndex = muxer.addTrack(codec.getOutputFormat());
+        muxer.start();
+      } else if (index >= 0) {
+        ByteBuffer data = codec.getOutputBuffer(index);
+        boolean isConfig = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+        if (data != null && !isConfig && bufferInfo.size > 0 && trackIndex >= 0) {
+          data.position(bufferInfo.offset);
+          data.limit(bufferInfo.offset + bufferInfo.size);
+          muxer.writeSampleData(trackIndex, data, bufferInfo);
+        }
+        codec.releaseOutputBuffer(index, false);
+        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class CelestialCatalogTest {
+  // Unit tests run from the module directory.
+  private static final String CATALOG_ASSET = "src/main/assets/solar_system.catalog";
+
+  private static final String SUN = "Sun|-|-|-|-|-|-|-|-|1.0|-|0.5|Sol.sfb|Our star";
+  private static final String EARTH =
+      "Earth|Sun|1.0|0.0167|0.0|-11.26|114.2|358.6|365.256|3.0e-6|1.0|0.05|Earth.sfb|Home";
+  private static final String MOON =
+      "Moon|Earth|0.00257|0.0549|5.145|125.08|318.15|135.27|27.32|3.7e-8|0.15|0.018|Luna.sfb|Moon";
+
+  @Test
+  public void read_mapsTheBundledCatalog() throws IOException {
+    CelestialCatalog catalog;
+    try (FileChannel channel = new FileInputStream(CATALOG_ASSET).getChannel()) {
+      catalog = CelestialCatalog.read(channel, 0, channel.size());
+    }
+
+    assertTrue(catalog.size() >= 10);
+    CelestialBody sun = catalog.get(0);
+    assertEquals("Sun", sun.getName());
+    assertEquals(-1, sun.getParentIndex());
+    assertNull(sun.getOrbit());
+    for (int i = 1; i < catalog.size(); i++) {
+      CelestialBody body = catalog.get(i);
+      assertTrue(body.getName(), body.getParentIndex() >= 0 && body.getParentIndex() < i);
+      assertNotNull(body.getName(), body.getOrbit());
+      assertTrue(body.getName(), body.getModel().endsWith(".sfb"));
+    }
+    assertEquals("Sol.sfb", catalog.getModelsByDistance().get(0));
+  }
+
+  @Test
+  public void read_streamsTheBundledCatalog() throws IOException {
+    CelestialCatalog mapped;
+    try (FileChannel channel = new FileInputStream(CATALOG_ASSET).getChannel()) {
+      mapped = CelestialCatalog.read(channel, 0, channel.size());
+    }
+    CelestialCatalog streamed;
+    try (ReadableByteChannel channel = Channels.newChannel(new FileInputStream(CATALOG_ASSET))) {
+      streamed = CelestialCatalog.read(channel);
+    }
+
+    assertEquals(mapped.size(), streamed.size());
+    for (int i = 0; i < mapped.size(); i++) {
+      assertEquals(mapped.get(i).getName(), streamed.get(i).getName());
+      assertEquals(mapped.get(i).getParentIndex(), streamed.get(i).getParentIndex());
+    }
+  }
+
+  @Test
+  public void parse_buildsTheHierarchyAndSkipsComments() {
+    CelestialCatalog catalog = parse("# comment", SUN, "", EARTH, "  # indented comment", MOON);
+
+    assertEquals(3, catalog.size());
+    CelestialBody earth = catalog.get(1);
+    assertEquals(0, earth.getParentIndex());
+    assertEquals(1.0, earth.getOrbit().getSemiMajorAxisAu(), 0.0);
+    assertEquals(0.0167, earth.getOrbit().getEccentricity(), 0.0);
+    assertEquals(365.256, earth.getOrbit().getPeriodDays(), 0.0);
+    assertEquals("Home", earth.getInfo());
+    CelestialBody moon = catalog.get(2);
+    assertEquals(1, moon.getParentIndex());
+    assertEquals(0.15f, moon.getDisplayDistanceAu(), 0.0f);
+    assertEquals(Arrays.asList("Sol.sfb", "Earth.sfb", "Luna.sfb"), catalog.getModelsByDistance());
+  }
+
+  @Test
+  public void parse_rejectsAnEmptyCatalog() {
+    assertRejected("no bodies", "# only a comment", "");
+  }
+
+  @Test
+  public void parse_rejectsAMissingField() {
+    String withoutInfo = EARTH.substring(0, EARTH.lastIndexOf('|'));
+    assertRejected("Line 2: expected 14 fields, got 13", SUN, withoutInfo);
+  }
+
+  @Test
+  public void parse_rejectsARootWithAParent() {
+    assertRejected("Line 1: the first body can't have a parent", EARTH);
+  }
+
+  @Test
+  public void parse_rejectsAParentListedLater() {
+    assertRejected("Line 2: parent Earth must be listed before Moon", SUN, MOON, EARTH);
+  }
+
+  @Test
+  public void parse_rejectsADuplicateBody() {
+    assertRejected("Line 3: duplicate body Earth", SUN, EARTH, EARTH);
+  }
+
+  @Test
+  public void parse_rejectsANumberThatDoesntParse() {
+    assertRejected("Line 2:", SUN, EARTH.replace("365.256", "a year"));
+  }
+
+  @Test
+  public void parse_rejectsAnOrbitThatIsntElliptic() {
+    assertRejected("Line 2: Only elliptic orbits", SUN, EARTH.replace("0.0167", "1.0"));
+  }
+
+  private static CelestialCatalog parse(String... lines) {
+    String text = String.join("\n", lines);
+    return CelestialCatalog.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static void assertRejected(String message, String... lines) {
+    try {
+      parse(lines);
+      fail("Expected the catalog to be rejected with: " + message);
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(message));
+    }
+  }
+}
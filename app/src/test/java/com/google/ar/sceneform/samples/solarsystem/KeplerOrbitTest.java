@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class KeplerOrbitTest {
+  private static final double TWO_PI = 2.0 * Math.PI;
+
+  @Test
+  public void solveEccentricAnomaly_convergesForEveryEllipticEccentricity() {
+    for (int percent = 0; percent <= 99; percent++) {
+      double eccentricity = percent / 100.0;
+      // Several revolutions in both directions, including the samples right next to periapsis
+      // where very eccentric orbits are hardest to solve.
+      for (int step = -720; step <= 720; step++) {
+        double meanAnomaly = step * Math.PI / 180.0;
+        double e = KeplerOrbit.solveEccentricAnomaly(meanAnomaly, eccentricity);
+        double residual = e - eccentricity * Math.sin(e) - meanAnomaly;
+        assertTrue(
+            "e=" + eccentricity + " M=" + meanAnomaly + " residual=" + residual,
+            Math.abs(residual) < 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void solveEccentricAnomaly_staysInTheRevolutionOfTheMeanAnomaly() {
+    for (int revolution = -3; revolution <= 3; revolution++) {
+      double meanAnomaly = revolution * TWO_PI + 1.0;
+      double e = KeplerOrbit.solveEccentricAnomaly(meanAnomaly, 0.5);
+      assertEquals(revolution, Math.floor((e + Math.PI) / TWO_PI), 0.0);
+    }
+  }
+
+  @Test
+  public void solveEccentricAnomaly_isTheMeanAnomalyOnACircle() {
+    assertEquals(2.5, KeplerOrbit.solveEccentricAnomaly(2.5, 0.0), 1e-12);
+  }
+
+  @Test
+  public void computePosition_closesAfterOnePeriod() {
+    for (OrbitalElements orbit : orbits()) {
+      float[] start = new float[3];
+      float[] end = new float[3];
+      for (double days = -1000.0; days <= 1000.0; days += 37.0) {
+        KeplerOrbit.computePosition(orbit, days, start, 0);
+        KeplerOrbit.computePosition(orbit, days + orbit.getPeriodDays(), end, 0);
+        double tolerance = orbit.getSemiMajorAxisAu() * 1e-5;
+        assertEquals(start[0], end[0], tolerance);
+        assertEquals(start[1], end[1], tolerance);
+        assertEquals(start[2], end[2], tolerance);
+      }
+    }
+  }
+
+  @Test
+  public void computeState_closesAfterOnePeriod() {
+    for (OrbitalElements orbit : orbits()) {
+      double[] start = new double[6];
+      double[] end = new double[6];
+      for (double days = -1000.0; days <= 1000.0; days += 37.0) {
+        KeplerOrbit.computeState(orbit, days, start, 0);
+        KeplerOrbit.computeState(orbit, days + orbit.getPeriodDays(), end, 0);
+        for (int i = 0; i < 6; i++) {
+          assertEquals(start[i], end[i], Math.abs(start[i]) * 1e-8 + 1e-12);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void computePosition_startsAtPeriapsisWithZeroMeanAnomaly() {
+    for (OrbitalElements orbit : orbits()) {
+      float[] position = new float[3];
+      KeplerOrbit.computePosition(orbit, 0.0, position, 0);
+      double distance =
+          Math.sqrt(
+              position[0] * position[0] + position[1] * position[1] + position[2] * position[2]);
+      double periapsis = orbit.getSemiMajorAxisAu() * (1.0 - orbit.getEccentricity());
+      assertEquals(periapsis, distance, periapsis * 1e-6);
+    }
+  }
+
+  /** Orbits from circular to very eccentric, all with a mean anomaly of 0 at J2000. */
+  private static OrbitalElements[] orbits() {
+    return new OrbitalElements[] {
+      new OrbitalElements(1.0, 0.0, 0.0, 0.0, 0.0, 0.0, 365.25),
+      new OrbitalElements(0.387, 0.2056, 7.0, 48.3, 29.1, 0.0, 87.97),
+      new OrbitalElements(17.8, 0.967, 162.3, 58.4, 111.3, 0.0, 27_509.0),
+      new OrbitalElements(2.5, 0.99, 45.0, 200.0, 300.0, 0.0, 1445.0),
+    };
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class PoseBufferTest {
+  private static final int BODY_COUNT = 64;
+  private static final long STEPS = 200_000;
+  private static final int NANOS_PER_STEP = 1000;
+
+  @Test
+  public void acquire_returnsNullUntilTheFirstPublish() {
+    PoseBuffer buffer = new PoseBuffer();
+    assertNull(buffer.acquire());
+
+    PoseBuffer.Frame frame = buffer.beginWrite();
+    frame.version = 1;
+    buffer.publish();
+    assertSame(frame, buffer.acquire());
+    buffer.release();
+  }
+
+  @Test
+  public void beginWrite_skipsTheFrameTheReaderHolds() {
+    PoseBuffer buffer = new PoseBuffer();
+    PoseBuffer.Frame first = buffer.beginWrite();
+    buffer.publish();
+    PoseBuffer.Frame second = buffer.beginWrite();
+    buffer.publish();
+
+    // The reader holds the second frame, the writer may only fill the first.
+    assertSame(second, buffer.acquire());
+    assertSame(first, buffer.beginWrite());
+    buffer.publish();
+    // Now the latest frame is the first one, and the only other one is held.
+    assertNull(buffer.beginWrite());
+    buffer.release();
+    assertSame(second, buffer.beginWrite());
+    buffer.publish();
+  }
+
+  /**
+   * Publishes numbered steps on one thread while reading on another. Every value a step writes is
+   * its number, and the previous poses are the number of the step published before it, so a frame
+   * that mixes two steps or goes back in time shows up as a mismatch.
+   */
+  @Test(timeout = 60_000)
+  public void readerNeverSeesATornFrame() throws Exception {
+    PoseBuffer buffer = new PoseBuffer();
+    AtomicReference<Throwable> writerError = new AtomicReference<>();
+    long[] skippedSteps = new long[1];
+    Thread writer =
+        new Thread(
+            () -> {
+              try {
+                skippedSteps[0] = writeSteps(buffer);
+              } catch (Throwable t) {
+                writerError.set(t);
+              }
+            },
+            "PoseBufferTest writer");
+    writer.start();
+
+    Random random = new Random(42);
+    long lastVersion = 0;
+    long framesRead = 0;
+    // The writer always publishes its last step, so the reader ends up seeing it.
+    while (lastVersion < STEPS && writerError.get() == null) {
+      PoseBuffer.Frame frame = buffer.acquire();
+      if (frame == null) {
+        continue;
+      }
+      try {
+        long version = frame.version;
+        long previous = (long) frame.previousDays;
+        assertTrue("went back from " + lastVersion + " to " + version, version >= lastVersion);
+        // Whatever the reader missed, the previous step is never older than what it last saw.
+        assertTrue(previous < version && (version == lastVersion || previous >= lastVersion));
+        assertEquals(BODY_COUNT, frame.bodyCount);
+        assertEquals(version, frame.days, 0.0);
+        assertEquals(version * NANOS_PER_STEP, frame.nanos);
+        assertEquals(previous * NANOS_PER_STEP, frame.previousNanos);
+        assertFilled(frame.positions, BODY_COUNT * 3, version);
+        assertFilled(frame.rotations, BODY_COUNT * 4, version);
+        assertFilled(frame.previousPositions, BODY_COUNT * 3, previous);
+        assertFilled(frame.previousRotations, BODY_COUNT * 4, previous);
+
+        // Any render time interpolates between the two steps of the frame, never beyond them.
+        long renderNanos = (previous - 2) * NANOS_PER_STEP + random.nextInt(5 * NANOS_PER_STEP);
+        float t = frame.interpolation(renderNanos);
+        assertTrue(t >= 0.0f && t <= 1.0f);
+        float from = frame.previousPositions[0];
+        float position = from + (frame.positions[0] - from) * t;
+        assertTrue(position >= previous && position <= version);
+        lastVersion = version;
+        framesRead++;
+      } finally {
+        buffer.release();
+      }
+    }
+    writer.join();
+
+    if (writerError.get() != null) {
+      throw new AssertionError("Writer failed", writerError.get());
+    }
+    assertEquals(STEPS, lastVersion);
+    assertTrue(framesRead > 1);
+    assertTrue(skippedSteps[0] < STEPS);
+  }
+
+  /** Publishes {@link #STEPS} steps as fast as it can, returns how many couldn't be written. */
+  private static long writeSteps(PoseBuffer buffer) {
+    long published = 0;
+    long skipped = 0;
+    for (long step = 1; step <= STEPS; step++) {
+      PoseBuffer.Frame frame = buffer.beginWrite();
+      // Like SimulationStepper, the last step is retried until it's published.
+      while (frame == null && step == STEPS) {
+        Thread.yield();
+        frame = buffer.beginWrite();
+      }
+      if (frame == null) {
+        skipped++;
+        continue;
+      }
+      frame.ensureCapacity(BODY_COUNT);
+      frame.version = step;
+      frame.bodyCount = BODY_COUNT;
+      fill(frame.positions, BODY_COUNT * 3, step);
+      fill(frame.rotations, BODY_COUNT * 4, step);
+      fill(frame.previousPositions, BODY_COUNT * 3, published);
+      fill(frame.previousRotations, BODY_COUNT * 4, published);
+      frame.days = step;
+      frame.previousDays = published;
+      frame.nanos = step * NANOS_PER_STEP;
+      frame.previousNanos = published * NANOS_PER_STEP;
+      buffer.publish();
+      published = step;
+    }
+    return skipped;
+  }
+
+  private static void fill(float[] values, int count, long value) {
+    for (int i = 0; i < count; i++) {
+      values[i] = value;
+    }
+  }
+
+  private static void assertFilled(float[] values, int count, long expected) {
+    for (int i = 0; i < count; i++) {
+      if (values[i] != expected) {
+        throw new AssertionError(
+            "Torn frame: value " + i + " is " + values[i] + " instead of " + expected);
+      }
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordingPipelineTest {
+  private static final int WIDTH = 4;
+  private static final int HEIGHT = 2;
+  private static final int FRAME_BYTES = WIDTH * HEIGHT * FrameBuffer.BYTES_PER_PIXEL;
+  private static final int HEADER_BYTES = 16;
+  private static final long TIMEOUT_SECONDS = 5;
+
+  private File file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = File.createTempFile("recording", ".raw");
+  }
+
+  @After
+  public void deleteFile() {
+    file.delete();
+  }
+
+  @Test
+  public void encodesEverySubmittedFrameInOrder() throws Exception {
+    // Left over from a previous, longer recording; the encoder cuts it off after the last frame.
+    Files.write(file.toPath(), new byte[10 * FRAME_BYTES]);
+    RawFrameFileEncoder encoder = new RawFrameFileEncoder(file);
+    RecordingPipeline pipeline = new RecordingPipeline(encoder, WIDTH, HEIGHT, 3);
+    pipeline.start();
+    for (int i = 1; i <= 3; i++) {
+      submitFrame(pipeline, i * 1000L, (byte) i);
+    }
+    pipeline.stop();
+
+    assertTrue(pipeline.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertNull(pipeline.getError());
+    assertEquals(3, pipeline.getEncodedFrames());
+    assertEquals(0, pipeline.getDroppedFrames());
+
+    ByteBuffer written = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    written.order(ByteOrder.LITTLE_ENDIAN);
+    assertEquals(3 * (HEADER_BYTES + FRAME_BYTES), written.remaining());
+    assertEquals(written.remaining(), encoder.getBytesWritten());
+    for (int i = 1; i <= 3; i++) {
+      assertEquals(WIDTH, written.getInt());
+      assertEquals(HEIGHT, written.getInt());
+      assertEquals(i * 1000L, written.getLong());
+      byte[] pixels = new byte[FRAME_BYTES];
+      written.get(pixels);
+      byte[] expected = new byte[FRAME_BYTES];
+      Arrays.fill(expected, (byte) i);
+      assertTrue("frame " + i, Arrays.equals(expected, pixels));
+    }
+  }
+
+  @Test
+  public void dropsFramesWhileEveryBufferIsQueued() throws Exception {
+    GatedEncoder encoder = new GatedEncoder(new RawFrameFileEncoder(file));
+    RecordingPipeline pipeline = new RecordingPipeline(encoder, WIDTH, HEIGHT, 2);
+    pipeline.start();
+
+    // The encoder is held in start, so nothing leaves the queue.
+    assertEquals(1, pipeline.getCaptureDivisor());
+    submitFrame(pipeline, 1L, (byte) 1);
+    assertEquals(2, pipeline.getCaptureDivisor());
+    submitFrame(pipeline, 2L, (byte) 2);
+    assertNull(pipeline.acquire());
+    assertNull(pipeline.acquire());
+    assertEquals(2, pipeline.getDroppedFrames());
+
+    encoder.open();
+    pipeline.stop();
+    assertTrue(pipeline.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(2, pipeline.getEncodedFrames());
+    assertEquals(2, pipeline.getDroppedFrames());
+    assertEquals(1, pipeline.getCaptureDivisor());
+    assertEquals(2 * (HEADER_BYTES + FRAME_BYTES), file.length());
+  }
+
+  @Test
+  public void stopEncodesTheQueuedFramesBeforeStoppingTheEncoder() throws Exception {
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    GatedEncoder encoder = new GatedEncoder(new RawFrameFileEncoder(file), events);
+    RecordingPipeline pipeline = new RecordingPipeline(encoder, WIDTH, HEIGHT, 3);
+    CountDownLatch finished = new CountDownLatch(1);
+    pipeline.setOnFinishedListener(
+        error -> {
+          events.add("finished " + error);
+          finished.countDown();
+        });
+    pipeline.start();
+    submitFrame(pipeline, 1L, (byte) 1);
+    submitFrame(pipeline, 2L, (byte) 2);
+    FrameBuffer late = pipeline.acquire();
+    pipeline.stop();
+
+    // Nothing is accepted after stop, even into a buffer acquired before it.
+    assertNull(pipeline.acquire());
+    late.prepare(WIDTH, HEIGHT, 3L);
+    pipeline.submit(late);
+    assertEquals(2, pipeline.getDroppedFrames());
+
+    encoder.open();
+    assertTrue(pipeline.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(
+        Arrays.asList("start", "encode 1", "encode 2", "stop", "finished null"), events);
+    assertEquals(2, pipeline.getEncodedFrames());
+  }
+
+  @Test
+  public void encoderErrorEndsTheRecordingAndStillStopsTheEncoder() throws Exception {
+    List<String> events = Collections.synchronizedList(new ArrayList<>());
+    IOException failure = new IOException("disk full");
+    GatedEncoder encoder = new GatedEncoder(new RawFrameFileEncoder(file), events);
+    encoder.failure = failure;
+    RecordingPipeline pipeline = new RecordingPipeline(encoder, WIDTH, HEIGHT, 3);
+    pipeline.start();
+    submitFrame(pipeline, 1L, (byte) 1);
+    submitFrame(pipeline, 2L, (byte) 2);
+    encoder.open();
+
+    assertTrue(pipeline.awaitFinished(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertSame(failure, pipeline.getError());
+    assertEquals(Arrays.asList("start", "encode 1", "stop"), events);
+    assertEquals(0, pipeline.getEncodedFrames());
+    // Every buffer went back to the pool, but no more frames are accepted.
+    assertNull(pipeline.acquire());
+    assertEquals(0L, file.length());
+  }
+
+  private static void submitFrame(RecordingPipeline pipeline, long timestampNanos, byte value) {
+    FrameBuffer buffer = pipeline.acquire();
+    assertNotNull(buffer);
+    ByteBuffer pixels = buffer.prepare(WIDTH, HEIGHT, timestampNanos);
+    while (pixels.hasRemaining()) {
+      pixels.put(value);
+    }
+    pipeline.submit(buffer);
+  }
+
+  /**
+   * Holds the encoder thread in {@link #start} until {@link #open}, so frames pile up in the queue,
+   * and records what the pipeline asks of the encoder.
+   */
+  private static class GatedEncoder implements FrameEncoder {
+    private final FrameEncoder encoder;
+    private final List<String> events;
+    private final CountDownLatch gate = new CountDownLatch(1);
+    // Thrown by the first encode instead of encoding, if set.
+    IOException failure;
+
+    GatedEncoder(FrameEncoder encoder) {
+      this(encoder, Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    GatedEncoder(FrameEncoder encoder, List<String> events) {
+      this.encoder = encoder;
+      this.events = events;
+    }
+
+    void open() {
+      gate.countDown();
+    }
+
+    @Override
+    public void start(int width, int height) throws IOException {
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+      events.add("start");
+      encoder.start(width, height);
+    }
+
+    @Override
+    public void encode(FrameBuffer frame) throws IOException {
+      events.add("encode " + frame.getTimestampNanos());
+      if (failure != null) {
+        throw failure;
+      }
+      encoder.encode(frame);
+    }
+
+    @Override
+    public void stop() throws IOException {
+      events.add("stop");
+      encoder.stop();
+    }
+  }
+}
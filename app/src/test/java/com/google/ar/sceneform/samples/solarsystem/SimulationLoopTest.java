@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class SimulationLoopTest {
+  private static final float ORBIT_RADIUS = 2.0f;
+  // At the default speed, one revolution per second: 6 degrees per simulation step.
+  private static final double PERIOD_DAYS = SimulationClock.DAYS_PER_SECOND;
+  // Steps between the two poses of a frame. More than one when the render thread held the frame
+  // a step would have gone to, and that step was published with the next one.
+  private static final int MAX_FRAME_STEPS = 4;
+
+  /** Keeps the last values the loop wrote. */
+  private static final class RecordingScene implements BodyScene {
+    final float[] positions = new float[3 * 2];
+    final float[] rotations = new float[4 * 2];
+
+    @Override
+    public void applyPosition(int body, float x, float y, float z) {
+      positions[body * 3] = x;
+      positions[body * 3 + 1] = y;
+      positions[body * 3 + 2] = z;
+    }
+
+    @Override
+    public void applyRotation(int body, float x, float y, float z, float w) {
+      rotations[body * 4] = x;
+      rotations[body * 4 + 1] = y;
+      rotations[body * 4 + 2] = z;
+      rotations[body * 4 + 3] = w;
+    }
+
+    @Override
+    public void applyScale(int body, float scale) {}
+  }
+
+  /**
+   * Renders for a while as fast as possible while the simulation thread steps. Every pose shown
+   * must lie between the two steps of its frame: on a circular orbit, on the chord between them. A
+   * pose mixed from unrelated or half written steps would land far inside the circle.
+   */
+  @Test(timeout = 60_000)
+  public void threadedUpdatesShowPosesBetweenPublishedSteps() {
+    RecordingScene scene = new RecordingScene();
+    SimulationLoop loop = new SimulationLoop(new SolarSettingsStore(), scene);
+    loop.addBody(new OrbitalElements(1.0, 0.0, 0.0, 0.0, 0.0, 0.0, PERIOD_DAYS), ORBIT_RADIUS, 90);
+    loop.addBody(
+        new OrbitalElements(5.0, 0.0, 30.0, 80.0, 10.0, 45.0, PERIOD_DAYS / 2),
+        ORBIT_RADIUS / 2,
+        -400);
+    loop.start();
+
+    // The faster body turns twice as far per step. A chord spanning an angle comes closest to the
+    // center halfway, at the cosine of half the angle.
+    double frameAngle = 2.0 * Math.PI * 2 / SimulationLoop.STEPS_PER_SECOND * MAX_FRAME_STEPS;
+    float minimumRadius = (float) Math.cos(frameAngle / 2) - 1e-4f;
+    long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+    double lastDays = Double.NEGATIVE_INFINITY;
+    int updates = 0;
+    try {
+      while (System.nanoTime() < endNanos) {
+        loop.update(0.0f);
+        double days = loop.getSimulationDays();
+        if (days == 0.0) {
+          // Nothing was published yet.
+          continue;
+        }
+        assertTrue("went back from " + lastDays + " to " + days, days >= lastDays);
+        lastDays = days;
+        updates++;
+
+        for (int body = 0; body < 2; body++) {
+          float radius = body == 0 ? ORBIT_RADIUS : ORBIT_RADIUS / 2;
+          int p = body * 3;
+          float x = scene.positions[p];
+          float y = scene.positions[p + 1];
+          float z = scene.positions[p + 2];
+          float distance = (float) Math.sqrt(x * x + y * y + z * z) / radius;
+          assertTrue("body " + body + " at " + distance, distance >= minimumRadius);
+          assertTrue("body " + body + " at " + distance, distance <= 1.0f + 1e-4f);
+
+          int r = body * 4;
+          assertEquals(0.0f, scene.rotations[r], 0.0f);
+          assertEquals(0.0f, scene.rotations[r + 2], 0.0f);
+          float y2 = scene.rotations[r + 1] * scene.rotations[r + 1];
+          float w2 = scene.rotations[r + 3] * scene.rotations[r + 3];
+          assertEquals(1.0f, y2 + w2, 1e-5f);
+        }
+      }
+    } finally {
+      loop.stop();
+    }
+
+    assertTrue(updates > 0);
+    // About one and a half seconds of real time passed, at 30 days each.
+    assertTrue(lastDays > SimulationClock.DAYS_PER_SECOND * 0.5);
+  }
+
+  @Test
+  public void getSimulationDays_returnsTheJumpTimeBeforeAnyUpdate() {
+    SimulationLoop loop = new SimulationLoop(new SolarSettingsStore(), new RecordingScene());
+    loop.jumpToDays(1234.5);
+    assertEquals(1234.5, loop.getSimulationDays(), 0.0);
+
+    loop.addBody(new OrbitalElements(1.0, 0.0, 0.0, 0.0, 0.0, 0.0, PERIOD_DAYS), ORBIT_RADIUS, 0);
+    loop.update(0.0f);
+    assertEquals(1234.5, loop.getSimulationDays(), 0.0);
+  }
+
+  @Test(timeout = 60_000)
+  public void getSimulationDays_neverShowsTheTimeBeforeAJump() {
+    SimulationLoop loop = new SimulationLoop(new SolarSettingsStore(), new RecordingScene());
+    loop.addBody(new OrbitalElements(1.0, 0.0, 0.0, 0.0, 0.0, 0.0, PERIOD_DAYS), ORBIT_RADIUS, 0);
+    loop.start();
+    try {
+      for (int jump = 1; jump <= 20; jump++) {
+        double days = jump * 10_000.0;
+        loop.jumpToDays(days);
+        long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+        while (System.nanoTime() < endNanos) {
+          loop.update(0.0f);
+          double shown = loop.getSimulationDays();
+          assertTrue("showed " + shown + " after jumping to " + days, shown >= days);
+          assertTrue("showed " + shown + " after jumping to " + days, shown < days + 100.0);
+        }
+      }
+    } finally {
+      loop.stop();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Builds benchmark inputs from the app's own solar system catalog. */
+final class BenchmarkBodies {
+  private static final String CATALOG_RESOURCE = "/solar_system.catalog";
+  private static final String EPHEMERIS_RESOURCE = "/solar_system.ephemeris";
+
+  // Same values as SolarActivity and RotatingNode.
+  static final float AU_TO_METERS = 0.5f;
+  static final float DEGREES_PER_SECOND = 90.0f;
+
+  private BenchmarkBodies() {}
+
+  /** Returns every body of the catalog that orbits something, in catalog order. */
+  static List<CelestialBody> orbitingBodies() {
+    CelestialCatalog catalog;
+    try (InputStream stream = BenchmarkBodies.class.getResourceAsStream(CATALOG_RESOURCE);
+        ReadableByteChannel channel = Channels.newChannel(stream)) {
+      catalog = CelestialCatalog.read(channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    List<CelestialBody> bodies = new ArrayList<>();
+    for (int i = 0; i < catalog.size(); i++) {
+      if (catalog.get(i).getOrbit() != null) {
+        bodies.add(catalog.get(i));
+      }
+    }
+    return bodies;
+  }
+
+  /**
+   * Returns the app's ephemeris tables. Resources can't be mapped, so they are read into a direct
+   * buffer, which is what a mapping gives the app.
+   */
+  static Ephemeris ephemeris() {
+    try (InputStream stream = BenchmarkBodies.class.getResourceAsStream(EPHEMERIS_RESOURCE);
+        ReadableByteChannel channel = Channels.newChannel(stream)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(stream.available());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {}
+      buffer.flip();
+      return Ephemeris.parse(buffer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns a simulation of {@code bodyCount} bodies, cycling through the catalog. */
+  static BodySimulation simulation(int bodyCount) {
+    List<CelestialBody> bodies = orbitingBodies();
+    BodySimulation simulation = new BodySimulation();
+    for (int i = 0; i < bodyCount; i++) {
+      CelestialBody body = bodies.get(i % bodies.size());
+      simulation.addBody(
+          body.getOrbit(), body.getDisplayDistanceAu() * AU_TO_METERS, DEGREES_PER_SECOND);
+    }
+    return simulation;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Positions from the precomputed ephemeris tables against solving Kepler's equation. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EphemerisBenchmark {
+  private static final double FRAME_DAYS = SimulationClock.DAYS_PER_SECOND / 60.0;
+
+  @Param({"10", "100", "1000"})
+  public int bodyCount;
+
+  private OrbitalElements[] orbits;
+  private Ephemeris ephemeris;
+  private int[] ephemerisBodies;
+  private float[] positions;
+  private double days;
+  // Days covered by the tables of every benchmarked body. Both benchmarks wrap around within them.
+  private double startDays = Double.NEGATIVE_INFINITY;
+  private double endDays = Double.POSITIVE_INFINITY;
+
+  @Setup
+  public void setUp() {
+    ephemeris = BenchmarkBodies.ephemeris();
+    List<CelestialBody> bodies = BenchmarkBodies.orbitingBodies();
+    orbits = new OrbitalElements[bodyCount];
+    ephemerisBodies = new int[bodyCount];
+    for (int i = 0; i < bodyCount; i++) {
+      CelestialBody body = bodies.get(i % bodies.size());
+      orbits[i] = body.getOrbit();
+      ephemerisBodies[i] = ephemeris.indexOf(body.getName());
+      if (ephemerisBodies[i] < 0) {
+        throw new IllegalStateException(body.getName() + " isn't in the ephemeris");
+      }
+      startDays = Math.max(startDays, ephemeris.getStartDays(ephemerisBodies[i]));
+      endDays = Math.min(endDays, ephemeris.getEndDays(ephemerisBodies[i]));
+    }
+    if (startDays >= endDays) {
+      throw new IllegalStateException("The ephemeris tables don't cover a common range");
+    }
+    days = Math.max(startDays, Math.min(0.0, endDays - FRAME_DAYS));
+    positions = new float[bodyCount * 3];
+  }
+
+  @Benchmark
+  public float kepler() {
+    advance();
+    for (int i = 0; i < bodyCount; i++) {
+      KeplerOrbit.computePosition(orbits[i], days, positions, i * 3);
+    }
+    return positions[0];
+  }
+
+  @Benchmark
+  public float tables() {
+    advance();
+    for (int i = 0; i < bodyCount; i++) {
+      if (!ephemeris.computePosition(ephemerisBodies[i], days, positions, i * 3)) {
+        throw new IllegalStateException("Day " + days + " isn't in the tables");
+      }
+    }
+    return positions[0];
+  }
+
+  /** Moves on by a frame, back to the start of the tables once they run out. */
+  private void advance() {
+    days += FRAME_DAYS;
+    if (days >= endDays) {
+      days -= endDays - startDays;
+    }
+  }
+}
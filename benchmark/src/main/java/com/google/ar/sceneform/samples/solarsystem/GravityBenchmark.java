@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One leapfrog step of the gravity mode: the catalog's bodies plus a belt of small bodies.
+ *
+ * <p>Up to {@link GravitySimulation#TREE_MIN_BODIES} bodies every pair is summed directly, above it
+ * the Barnes-Hut tree is walked in parallel on the common fork-join pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GravityBenchmark {
+  private static final long BELT_SEED = 1801L;
+  // Roughly the mass of a large asteroid, in solar masses.
+  private static final double ASTEROID_MASS = 1e-10;
+
+  @Param({"100", "1000", "10000"})
+  public int bodyCount;
+
+  private GravitySimulation simulation;
+
+  @Setup
+  public void setUp() {
+    List<CelestialBody> bodies = BenchmarkBodies.orbitingBodies();
+    simulation = new GravitySimulation();
+    // The sun is the catalog's first body, so the bodies keep their catalog indices and parents.
+    simulation.addBody(1.0, -1, null, -1);
+    for (CelestialBody body : bodies) {
+      simulation.addBody(body.getMass(), body.getParentIndex(), body.getOrbit(), -1);
+    }
+
+    Random random = new Random(BELT_SEED);
+    while (simulation.getBodyCount() < bodyCount) {
+      double semiMajorAxis = 2.1 + random.nextDouble() * 1.2;
+      OrbitalElements orbit =
+          new OrbitalElements(
+              semiMajorAxis,
+              random.nextDouble() * 0.2,
+              random.nextDouble() * 15.0,
+              random.nextDouble() * 360.0,
+              random.nextDouble() * 360.0,
+              random.nextDouble() * 360.0,
+              365.25 * Math.pow(semiMajorAxis, 1.5));
+      simulation.addBody(ASTEROID_MASS, 0, orbit, -1);
+    }
+    simulation.reset(0.0);
+  }
+
+  @Benchmark
+  public double step() {
+    simulation.step(GravitySimulation.STEP_DAYS);
+    return simulation.getDays();
+  }
+}
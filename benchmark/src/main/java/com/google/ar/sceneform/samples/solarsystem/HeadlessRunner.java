@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Steps the app's {@link SimulationLoop} for many frames without Android, ARCore or a GPU.
+ *
+ * <p>For every body count it records the CPU time of each step, the bytes allocated per step and
+ * the peak heap, then prints a table and writes the same numbers as CSV. The scale slider is moved
+ * every {@link #SLIDER_INTERVAL_FRAMES} frames, so the rescaling path is exercised as well.
+ *
+ * <p>Options: {@code --bodies 10,100,1000,10000 --frames 5000 --warmup 1000 --out results.csv}.
+ */
+public final class HeadlessRunner {
+  private static final float FRAME_SECONDS = 1.0f / 60.0f;
+  private static final int SLIDER_INTERVAL_FRAMES = 120;
+
+  /** Stands in for the scene graph, storing the transforms the loop writes. */
+  private static final class RecordingScene implements BodyScene {
+    private final float[] positions;
+    private final float[] rotations;
+    private final float[] scales;
+
+    RecordingScene(int bodyCount) {
+      positions = new float[bodyCount * 3];
+      rotations = new float[bodyCount * 4];
+      scales = new float[bodyCount];
+    }
+
+    @Override
+    public void applyPosition(int body, float x, float y, float z) {
+      int p = body * 3;
+      positions[p] = x;
+      positions[p + 1] = y;
+      positions[p + 2] = z;
+    }
+
+    @Override
+    public void applyRotation(int body, float x, float y, float z, float w) {
+      int r = body * 4;
+      rotations[r] = x;
+      rotations[r + 1] = y;
+      rotations[r + 2] = z;
+      rotations[r + 3] = w;
+    }
+
+    @Override
+    public void applyScale(int body, float scale) {
+      scales[body] = scale;
+    }
+  }
+
+  private HeadlessRunner() {}
+
+  public static void main(String[] args) throws IOException {
+    int[] bodyCounts = {10, 100, 1000, 10000};
+    int frames = 5000;
+    int warmupFrames = 1000;
+    File out = null;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--bodies":
+          String[] counts = args[i + 1].split(",");
+          bodyCounts = new int[counts.length];
+          for (int c = 0; c < counts.length; c++) {
+            bodyCounts[c] = Integer.parseInt(counts[c].trim());
+          }
+          break;
+        case "--frames":
+          frames = Integer.parseInt(args[i + 1]);
+          break;
+        case "--warmup":
+          warmupFrames = Integer.parseInt(args[i + 1]);
+          break;
+        case "--out":
+          out = new File(args[i + 1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+
+    String header =
+        "bodies,frames,cpu_p50_us,cpu_p95_us,cpu_p99_us,cpu_max_us,cpu_mean_us,"
+            + "alloc_bytes_per_frame,alloc_mb_per_cpu_s,peak_heap_mb";
+    List<String> rows = new ArrayList<>();
+    System.out.println(header);
+    for (int bodyCount : bodyCounts) {
+      String row = run(bodyCount, frames, warmupFrames);
+      System.out.println(row);
+      rows.add(row);
+    }
+
+    if (out != null) {
+      File parent = out.getAbsoluteFile().getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      try (Writer writer = new FileWriter(out)) {
+        writer.write(header);
+        writer.write('\n');
+        for (String row : rows) {
+          writer.write(row);
+          writer.write('\n');
+        }
+      }
+    }
+  }
+
+  private static String run(int bodyCount, int frames, int warmupFrames) {
+    SimulationLoop loop =
+        new SimulationLoop(new SolarSettingsStore(), new RecordingScene(bodyCount));
+    List<CelestialBody> bodies = BenchmarkBodies.orbitingBodies();
+    float[] planetScales = new float[bodyCount];
+    for (int i = 0; i < bodyCount; i++) {
+      CelestialBody body = bodies.get(i % bodies.size());
+      planetScales[i] = body.getScale();
+      loop.addBody(
+          body.getOrbit(),
+          body.getDisplayDistanceAu() * BenchmarkBodies.AU_TO_METERS,
+          BenchmarkBodies.DEGREES_PER_SECOND);
+    }
+
+    for (int frame = 0; frame < warmupFrames; frame++) {
+      step(loop, planetScales, frame);
+    }
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        heapPools.add(pool);
+      }
+    }
+    System.gc();
+    for (MemoryPoolMXBean pool : heapPools) {
+      pool.resetPeakUsage();
+    }
+
+    LatencyHistogram cpuTimes = new LatencyHistogram();
+    long totalCpuNanos = 0;
+    long allocatedBefore = allocatedBytes(threads);
+    for (int frame = 0; frame < frames; frame++) {
+      long start = threads.getCurrentThreadCpuTime();
+      step(loop, planetScales, frame);
+      long cpuNanos = threads.getCurrentThreadCpuTime() - start;
+      cpuTimes.record(cpuNanos);
+      totalCpuNanos += cpuNanos;
+    }
+    long allocated = allocatedBytes(threads) - allocatedBefore;
+
+    long peakHeapBytes = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      peakHeapBytes += pool.getPeakUsage().getUsed();
+    }
+
+    return String.format(
+        Locale.US,
+        "%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f,%.1f,%.2f,%.1f",
+        bodyCount,
+        frames,
+        cpuTimes.getPercentileNanos(50) / 1e3,
+        cpuTimes.getPercentileNanos(95) / 1e3,
+        cpuTimes.getPercentileNanos(99) / 1e3,
+        cpuTimes.getMaxNanos() / 1e3,
+        totalCpuNanos / 1e3 / frames,
+        allocated < 0 ? -1.0 : (double) allocated / frames,
+        allocated < 0 || totalCpuNanos == 0 ? -1.0 : allocated / 1e6 / (totalCpuNanos / 1e9),
+        peakHeapBytes / 1e6);
+  }
+
+  /** One frame of the app: an occasional scale slider event, then the simulation update. */
+  private static void step(SimulationLoop loop, float[] planetScales, int frame) {
+    if (frame % SLIDER_INTERVAL_FRAMES == 0) {
+      int progress = (frame / SLIDER_INTERVAL_FRAMES) % 10 + 1;
+      for (int i = 0; i < planetScales.length; i++) {
+        loop.setBodyScale(i, planetScales[i] * progress);
+      }
+      loop.setDistanceScale(progress / 10.0f);
+    }
+    loop.update(FRAME_SECONDS);
+  }
+
+  /** Bytes allocated by the current thread so far, or -1 if the JVM can't tell. */
+  private static long allocatedBytes(ThreadMXBean threads) {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-frame work of OrbitDriver: solving every orbit and spinning every body.
+ *
+ * <p>{@link #spin} is the work that replaced the per-frame animation duration recompute of
+ * RotatingNode. {@link #jump} shows that jumping to any date costs the same as a frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OrbitBenchmark {
+  private static final float FRAME_SECONDS = 1.0f / 60.0f;
+
+  // Two dates a century apart, 2000-01-01 and 2100-01-01.
+  private static final long[] JUMP_DATES = {946_684_800_000L, 4_102_444_800_000L};
+
+  @Param({"10", "100", "1000"})
+  public int bodyCount;
+
+  private OrbitalElements[] orbits;
+  private float[] positions;
+  private double days;
+  private BodySimulation simulation;
+  private final SimulationClock clock = new SimulationClock();
+  private int jumps = 0;
+
+  @Setup
+  public void setUp() {
+    List<CelestialBody> bodies = BenchmarkBodies.orbitingBodies();
+    orbits = new OrbitalElements[bodyCount];
+    for (int i = 0; i < bodyCount; i++) {
+      orbits[i] = bodies.get(i % bodies.size()).getOrbit();
+    }
+    positions = new float[bodyCount * 3];
+    simulation = BenchmarkBodies.simulation(bodyCount);
+  }
+
+  /** Solves Kepler's equation for every body. */
+  @Benchmark
+  public float keplerPositions() {
+    days += FRAME_SECONDS * SimulationClock.DAYS_PER_SECOND;
+    for (int i = 0; i < bodyCount; i++) {
+      KeplerOrbit.computePosition(orbits[i], days, positions, i * 3);
+    }
+    return positions[0];
+  }
+
+  /** Computes the spin of every body. */
+  @Benchmark
+  public float spin() {
+    simulation.computeRotations(0, bodyCount);
+    return simulation.getRotations()[1];
+  }
+
+  /** A whole simulation frame: orbits, display scaling and spin. */
+  @Benchmark
+  public float step() {
+    clock.advance(FRAME_SECONDS);
+    simulation.setTime(clock.getDays(), clock.getSpinSeconds());
+    return simulation.getPositions()[0];
+  }
+
+  /** Jumps a century back or forth and computes every pose at the new date. */
+  @Benchmark
+  public float jump() {
+    clock.jumpToDate(JUMP_DATES[jumps++ & 1]);
+    simulation.setTime(clock.getDays(), clock.getSpinSeconds());
+    return simulation.getPositions()[0];
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The per-frame refit and the per-tap ray query of BodyPicker. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PickingBenchmark {
+  private static final float FRAME_SECONDS = 1.0f / 60.0f;
+  private static final float PICK_RADIUS = 0.02f;
+
+  @Param({"10", "100", "1000"})
+  public int bodyCount;
+
+  private BodySimulation simulation;
+  private final SimulationClock clock = new SimulationClock();
+  private final SphereTree tree = new SphereTree();
+
+  @Setup
+  public void setUp() {
+    simulation = BenchmarkBodies.simulation(bodyCount);
+    tree.setItemCount(bodyCount);
+    refit();
+  }
+
+  /** Moves the bodies on by a frame and refits the tree to them. */
+  @Benchmark
+  public int refit() {
+    clock.advance(FRAME_SECONDS);
+    simulation.setTime(clock.getDays(), clock.getSpinSeconds());
+    float[] positions = simulation.getPositions();
+    for (int i = 0; i < bodyCount; i++) {
+      int p = i * 3;
+      tree.setItem(i, positions[p], positions[p + 1], positions[p + 2], PICK_RADIUS);
+    }
+    tree.refit();
+    return tree.getItemCount();
+  }
+
+  /** A tap from above, straight down through the first body. */
+  @Benchmark
+  public int raycast() {
+    float[] positions = simulation.getPositions();
+    return tree.raycast(positions[0], 2.0f, positions[2], 0.0f, -1.0f, 0.0f);
+  }
+}
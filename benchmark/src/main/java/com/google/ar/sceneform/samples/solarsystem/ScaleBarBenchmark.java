@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What one event of the scale slider in SolarActivity costs: new scales, then the frame that moves
+ * the bodies to the new distance scale and hands everything to the scene.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScaleBarBenchmark {
+  @Param({"10", "100", "1000"})
+  public int bodyCount;
+
+  private float[] planetScales;
+  private LastPoseScene scene;
+  private SimulationLoop loop;
+  private int progress;
+
+  /** Stands in for the scene graph, keeping what the loop wrote last. */
+  private static final class LastPoseScene implements BodyScene {
+    float x;
+    float scale;
+
+    @Override
+    public void applyPosition(int body, float x, float y, float z) {
+      this.x = x;
+    }
+
+    @Override
+    public void applyRotation(int body, float x, float y, float z, float w) {}
+
+    @Override
+    public void applyScale(int body, float scale) {
+      this.scale = scale;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    List<CelestialBody> bodies = BenchmarkBodies.orbitingBodies();
+    scene = new LastPoseScene();
+    loop = new SimulationLoop(new SolarSettingsStore(), scene);
+    planetScales = new float[bodyCount];
+    for (int i = 0; i < bodyCount; i++) {
+      CelestialBody body = bodies.get(i % bodies.size());
+      planetScales[i] = body.getScale();
+      loop.addBody(
+          body.getOrbit(),
+          body.getDisplayDistanceAu() * BenchmarkBodies.AU_TO_METERS,
+          BenchmarkBodies.DEGREES_PER_SECOND);
+    }
+  }
+
+  @Benchmark
+  public float scaleBarEvent() {
+    // Move the slider back and forth so every event changes the scales.
+    progress = progress % 10 + 1;
+    float ratio = progress;
+    for (int i = 0; i < bodyCount; i++) {
+      loop.setBodyScale(i, planetScales[i] * ratio);
+    }
+    loop.setDistanceScale(progress / 10.0f);
+    // No time passes, only the slider moved.
+    loop.update(0.0f);
+    return scene.x + scene.scale;
+  }
+}
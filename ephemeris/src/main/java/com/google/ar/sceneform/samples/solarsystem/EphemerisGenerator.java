@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes the tables read by {@link Ephemeris}.
+ *
+ * <p>Every catalog body that {@link PlanetaryTheory} models is tabulated relative to its catalog
+ * parent. For each body the generator tries several polynomial degrees, and for each the longest
+ * span, a power of two fraction of the orbital period, whose fit stays within the tolerance at
+ * points between the fitting nodes; it keeps the combination that takes the fewest coefficients.
+ *
+ * <p>Options: {@code --catalog solar_system.catalog --out solar_system.ephemeris --from 1900
+ * --to 2100 --tolerance 1e-5}. The tolerance is relative to each body's semi-major axis.
+ */
+public final class EphemerisGenerator {
+  // At most 12 coefficients per axis, so a position takes a few dozen multiply-adds at runtime even
+  // where more coefficients over longer spans would make a smaller file.
+  private static final int[] COEFFICIENT_COUNTS = {6, 8, 10, 12};
+  private static final int MAX_PERIOD_HALVINGS = 12;
+
+  /** The fitted coefficients of one body. */
+  private static final class Table {
+    final String name;
+    final double spanDays;
+    final int spanCount;
+    final int coefficientCount;
+    final float[] coefficients;
+    double maxErrorAu;
+
+    Table(String name, double spanDays, int spanCount, int coefficientCount) {
+      this.name = name;
+      this.spanDays = spanDays;
+      this.spanCount = spanCount;
+      this.coefficientCount = coefficientCount;
+      coefficients = new float[spanCount * 3 * coefficientCount];
+    }
+  }
+
+  private final PlanetaryTheory theory = new PlanetaryTheory();
+  private final double[] body = new double[3];
+  private final double[] parent = new double[3];
+
+  private EphemerisGenerator() {}
+
+  public static void main(String[] args) throws IOException {
+    File catalogFile = null;
+    File out = null;
+    int fromYear = 1900;
+    int toYear = 2100;
+    double tolerance = 1e-5;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--catalog":
+          catalogFile = new File(args[i + 1]);
+          break;
+        case "--out":
+          out = new File(args[i + 1]);
+          break;
+        case "--from":
+          fromYear = Integer.parseInt(args[i + 1]);
+          break;
+        case "--to":
+          toYear = Integer.parseInt(args[i + 1]);
+          break;
+        case "--tolerance":
+          tolerance = Double.parseDouble(args[i + 1]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + args[i]);
+      }
+    }
+    if (catalogFile == null || out == null) {
+      throw new IllegalArgumentException("--catalog and --out are required");
+    }
+    if (toYear <= fromYear) {
+      throw new IllegalArgumentException("--to must be after --from");
+    }
+
+    CelestialCatalog catalog;
+    try (FileChannel channel = FileChannel.open(catalogFile.toPath(), StandardOpenOption.READ)) {
+      catalog = CelestialCatalog.read(channel, 0, channel.size());
+    }
+
+    // Julian years from J2000, close enough for the ends of the range.
+    double startDays = (fromYear - 2000) * 365.25;
+    double endDays = (toYear - 2000) * 365.25;
+
+    EphemerisGenerator generator = new EphemerisGenerator();
+    List<Table> tables = new ArrayList<>();
+    System.out.println("body,span_days,coefficients,spans,kb,max_error_km");
+    for (int i = 1; i < catalog.size(); i++) {
+      CelestialBody celestialBody = catalog.get(i);
+      String parentName = catalog.get(celestialBody.getParentIndex()).getName();
+      if (!PlanetaryTheory.models(celestialBody.getName())
+          || !PlanetaryTheory.models(parentName)) {
+        continue;
+      }
+      if (celestialBody.getName().getBytes(StandardCharsets.UTF_8).length
+          > Ephemeris.NAME_BYTES) {
+        throw new IllegalArgumentException("Body name too long: " + celestialBody.getName());
+      }
+      Table table = generator.fit(celestialBody, parentName, startDays, endDays, tolerance);
+      tables.add(table);
+      System.out.println(
+          String.format(
+              Locale.US,
+              "%s,%.4f,%d,%d,%d,%.3f",
+              table.name,
+              table.spanDays,
+              table.coefficientCount,
+              table.spanCount,
+              table.coefficients.length * 4 / 1024,
+              table.maxErrorAu * 149597870.7));
+    }
+    write(out, tables, startDays);
+  }
+
+  /** Picks the degree and span that need the fewest coefficients within the tolerance. */
+  private Table fit(
+      CelestialBody celestialBody,
+      String parentName,
+      double startDays,
+      double endDays,
+      double tolerance) {
+    OrbitalElements orbit = celestialBody.getOrbit();
+    double maxErrorAu = tolerance * orbit.getSemiMajorAxisAu();
+    Table best = null;
+    for (int coefficientCount : COEFFICIENT_COUNTS) {
+      double spanDays = orbit.getPeriodDays();
+      for (int halvings = 0; halvings <= MAX_PERIOD_HALVINGS; halvings++, spanDays /= 2.0) {
+        int spanCount = (int) Math.ceil((endDays - startDays) / spanDays);
+        if (best != null
+            && spanCount * coefficientCount >= best.spanCount * best.coefficientCount) {
+          break;
+        }
+        Table table =
+            tryFit(
+                celestialBody.getName(),
+                parentName,
+                startDays,
+                spanDays,
+                spanCount,
+                coefficientCount,
+                maxErrorAu);
+        if (table != null) {
+          best = table;
+          break;
+        }
+      }
+    }
+    if (best == null) {
+      throw new IllegalStateException("No fit within tolerance for " + celestialBody.getName());
+    }
+    return best;
+  }
+
+  /** Fits every span, returns null as soon as one misses the tolerance. */
+  private Table tryFit(
+      String name,
+      String parentName,
+      double startDays,
+      double spanDays,
+      int spanCount,
+      int coefficientCount,
+      double maxErrorAu) {
+    Table table = new Table(name, spanDays, spanCount, coefficientCount);
+    int n = coefficientCount;
+    double[][] samples = new double[3][n];
+    float[] fitted = new float[3];
+    for (int span = 0; span < spanCount; span++) {
+      double spanStart = startDays + span * spanDays;
+      double halfSpan = spanDays * 0.5;
+      double middle = spanStart + halfSpan;
+
+      // Sample at the Chebyshev nodes and project onto the polynomials.
+      for (int k = 0; k < n; k++) {
+        double node = Math.cos(Math.PI * (k + 0.5) / n);
+        relativePosition(name, parentName, middle + halfSpan * node, samples, k);
+      }
+      int offset = span * 3 * n;
+      for (int axis = 0; axis < 3; axis++) {
+        for (int j = 0; j < n; j++) {
+          double sum = 0.0;
+          for (int k = 0; k < n; k++) {
+            sum += samples[axis][k] * Math.cos(Math.PI * j * (k + 0.5) / n);
+          }
+          double coefficient = 2.0 * sum / n;
+          table.coefficients[offset + axis * n + j] =
+              (float) (j == 0 ? coefficient * 0.5 : coefficient);
+        }
+      }
+
+      // Check between the nodes, with the coefficients as they will be stored.
+      int checks = 2 * n + 1;
+      for (int c = 0; c < checks; c++) {
+        double t = -1.0 + 2.0 * (c + 0.5) / checks;
+        relativePosition(name, parentName, middle + halfSpan * t, samples, 0);
+        evaluate(table.coefficients, offset, n, t, fitted);
+        double dx = fitted[0] - samples[0][0];
+        double dy = fitted[1] - samples[1][0];
+        double dz = fitted[2] - samples[2][0];
+        double error = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (error > maxErrorAu) {
+          return null;
+        }
+        table.maxErrorAu = Math.max(table.maxErrorAu, error);
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Stores the position of a body relative to its parent in {@code samples[axis][index]}, in
+   * Sceneform's axis convention.
+   */
+  private void relativePosition(
+      String name, String parentName, double days, double[][] samples, int index) {
+    theory.heliocentricPosition(name, days, body);
+    theory.heliocentricPosition(parentName, days, parent);
+    double x = body[0] - parent[0];
+    double y = body[1] - parent[1];
+    double z = body[2] - parent[2];
+    // Ecliptic (x, y, z-north) to Sceneform (x, y-up, z-towards-viewer), as in KeplerOrbit.
+    samples[0][index] = x;
+    samples[1][index] = z;
+    samples[2][index] = -y;
+  }
+
+  /** The same evaluation as Ephemeris.computePosition, for checking the fit. */
+  private static void evaluate(float[] coefficients, int offset, int n, double t, float[] out) {
+    for (int axis = 0; axis < 3; axis++) {
+      int first = offset + axis * n;
+      double b1 = 0.0;
+      double b2 = 0.0;
+      for (int k = n - 1; k >= 1; k--) {
+        double b = 2.0 * t * b1 - b2 + coefficients[first + k];
+        b2 = b1;
+        b1 = b;
+      }
+      out[axis] = (float) (t * b1 - b2 + coefficients[first]);
+    }
+  }
+
+  private static void write(File out, List<Table> tables, double startDays) throws IOException {
+    int directoryBytes = Ephemeris.HEADER_BYTES + tables.size() * Ephemeris.ENTRY_BYTES;
+    int totalBytes = directoryBytes;
+    for (Table table : tables) {
+      totalBytes += table.coefficients.length * 4;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(totalBytes).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(Ephemeris.MAGIC).putInt(Ephemeris.VERSION).putInt(tables.size()).putInt(0);
+    int dataOffset = directoryBytes;
+    for (Table table : tables) {
+      byte[] name = table.name.getBytes(StandardCharsets.UTF_8);
+      buffer.put(name);
+      buffer.put(new byte[Ephemeris.NAME_BYTES - name.length]);
+      buffer.putDouble(startDays);
+      buffer.putDouble(table.spanDays);
+      buffer.putInt(table.spanCount);
+      buffer.putInt(table.coefficientCount);
+      buffer.putInt(dataOffset);
+      buffer.putInt(0);
+      dataOffset += table.coefficients.length * 4;
+    }
+    for (Table table : tables) {
+      for (float coefficient : table.coefficients) {
+        buffer.putFloat(coefficient);
+      }
+    }
+    buffer.flip();
+
+    File parentDir = out.getAbsoluteFile().getParentFile();
+    if (parentDir != null) {
+      parentDir.mkdirs();
+    }
+    try (FileChannel channel =
+        FileChannel.open(
+            out.toPath(),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+}
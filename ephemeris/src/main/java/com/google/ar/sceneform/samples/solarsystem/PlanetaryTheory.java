@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 Google LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.samples.solarsystem;
+
+/**
+ * A truncated analytic theory of the major planets and the Moon, evaluated at build time by {@link
+ * EphemerisGenerator}.
+ *
+ * <p>The planets follow JPL's mean orbital elements with their secular rates (E. M. Standish,
+ * "Keplerian Elements for Approximate Positions of the Major Planets", the 1800 to 2050 table),
+ * corrected by the largest mutual perturbations of Jupiter, Saturn and Uranus. The Moon follows its
+ * mean elements with the largest periodic terms in longitude, latitude and distance, and the Earth
+ * is placed off the Earth-Moon barycenter accordingly. These terms come from P. Schlyter, "How to
+ * compute planetary positions". Positions are good to arcminutes over the tabulated range, well
+ * beyond what fixed Keplerian elements give, and far too slow to evaluate every frame.
+ *
+ * <p>Positions are heliocentric, in astronomical units, in ecliptic J2000 axes with z pointing to
+ * the ecliptic north pole.
+ */
+final class PlanetaryTheory {
+  private static final double DAYS_PER_CENTURY = 36525.0;
+  private static final double EARTH_MOON_MASS_RATIO = 81.30056;
+  private static final double EARTH_RADIUS_AU = 6378.14 / 149597870.7;
+
+  // Days between 2000 Jan 0.0, the epoch of the lunar and perturbation terms, and J2000.
+  private static final double SCHLYTER_EPOCH_OFFSET_DAYS = 1.5;
+
+  private static final String[] PLANETS = {
+    "Mercury", "Venus", "EarthMoonBarycenter", "Mars", "Jupiter", "Saturn", "Uranus", "Neptune"
+  };
+
+  // Per planet: a (AU), e, I, L, longitude of perihelion and longitude of the ascending node (all
+  // angles in degrees), followed by their rates per Julian century.
+  private static final double[][] ELEMENTS = {
+    {
+      0.38709927, 0.20563593, 7.00497902, 252.25032350, 77.45779628, 48.33076593,
+      0.00000037, 0.00001906, -0.00594749, 149472.67411175, 0.16047689, -0.12534081
+    },
+    {
+      0.72333566, 0.00677672, 3.39467605, 181.97909950, 131.60246718, 76.67984255,
+      0.00000390, -0.00004107, -0.00078890, 58517.81538729, 0.00268329, -0.27769418
+    },
+    {
+      1.00000261, 0.01671123, -0.00001531, 100.46457166, 102.93768193, 0.0,
+      0.00000562, -0.00004392, -0.01294668, 35999.37244981, 0.32327364, 0.0
+    },
+    {
+      1.52371034, 0.09339410, 1.84969142, -4.55343205, -23.94362959, 49.55953891,
+      0.00001847, 0.00007882, -0.00813131, 19140.30268499, 0.44441088, -0.29257343
+    },
+    {
+      5.20288700, 0.04838624, 1.30439695, 34.39644051, 14.72847983, 100.47390909,
+      -0.00011607, -0.00013253, -0.00183714, 3034.74612775, 0.21252668, 0.20469106
+    },
+    {
+      9.53667594, 0.05386179, 2.48599187, 49.95424423, 92.59887831, 113.66242448,
+      -0.00125060, -0.00050991, 0.00193609, 1222.49362201, -0.41897216, -0.28867794
+    },
+    {
+      19.18916464, 0.04725744, 0.77263783, 313.23810451, 170.95427630, 74.01692503,
+      -0.00196176, -0.00004397, -0.00242939, 428.48202785, 0.40805281, 0.04240589
+    },
+    {
+      30.06992276, 0.00859048, 1.77004347, -55.12002969, 44.96476227, 131.78422574,
+      0.00026291, 0.00005105, 0.00035372, 218.45945325, -0.32241464, -0.01183482
+    },
+  };
+
+  private static final int EARTH_MOON_BARYCENTER = 2;
+  private static final int JUPITER = 4;
+  private static final int SATURN = 5;
+  private static final int URANUS = 6;
+
+  private final double[] moon = new double[3];
+
+  /** Returns true if the theory can place the named body. */
+  static boolean models(String name) {
+    return "Sun".equals(name) || "Earth".equals(name) || "Moon".equals(name) || planet(name) >= 0;
+  }
+
+  /**
+   * Writes the heliocentric position of a body into {@code out}.
+   *
+   * @param name the name of the body, as in the catalog
+   * @param days days since J2000
+   * @return false if the theory doesn't model the body
+   */
+  boolean heliocentricPosition(String name, double days, double[] out) {
+    if ("Sun".equals(name)) {
+      out[0] = 0.0;
+      out[1] = 0.0;
+      out[2] = 0.0;
+      return true;
+    }
+    if ("Earth".equals(name) || "Moon".equals(name)) {
+      geocentricMoon(days, moon);
+      planet(EARTH_MOON_BARYCENTER, days, out);
+      // The Earth sits off the barycenter opposite the Moon, in proportion to the Moon's mass.
+      double earthOffset = -1.0 / (1.0 + EARTH_MOON_MASS_RATIO);
+      double share = "Earth".equals(name) ? earthOffset : 1.0 + earthOffset;
+      out[0] += moon[0] * share;
+      out[1] += moon[1] * share;
+      out[2] += moon[2] * share;
+      return true;
+    }
+    int planet = planet(name);
+    if (planet < 0) {
+      return false;
+    }
+    planet(planet, days, out);
+    return true;
+  }
+
+  private static int planet(String name) {
+    for (int i = 0; i < PLANETS.length; i++) {
+      if (i != EARTH_MOON_BARYCENTER && PLANETS[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void planet(int planet, double days, double[] out) {
+    double[] elements = ELEMENTS[planet];
+    double t = days / DAYS_PER_CENTURY;
+    double a = elements[0] + elements[6] * t;
+    double e = elements[1] + elements[7] * t;
+    double inclination = Math.toRadians(elements[2] + elements[8] * t);
+    double meanLongitude = elements[3] + elements[9] * t;
+    double perihelion = elements[4] + elements[10] * t;
+    double node = Math.toRadians(elements[5] + elements[11] * t);
+
+    double meanAnomaly = Math.toRadians(meanLongitude - perihelion);
+    double argumentOfPerihelion = Math.toRadians(perihelion) - node;
+    orbitPosition(a, e, inclination, node, argumentOfPerihelion, meanAnomaly, out);
+
+    if (planet == JUPITER || planet == SATURN || planet == URANUS) {
+      perturb(planet, days + SCHLYTER_EPOCH_OFFSET_DAYS, out);
+    }
+  }
+
+  /** Adds the largest mutual perturbations of the outer planets, in longitude and latitude. */
+  private static void perturb(int planet, double d, double[] out) {
+    double mj = 19.8950 + 0.0830853001 * d;
+    double ms = 316.9670 + 0.0334442282 * d;
+    double mu = 142.5905 + 0.011725806 * d;
+
+    double longitude = 0.0;
+    double latitude = 0.0;
+    if (planet == JUPITER) {
+      longitude =
+          -0.332 * sin(2 * mj - 5 * ms - 67.6)
+              - 0.056 * sin(2 * mj - 2 * ms + 21)
+              + 0.042 * sin(3 * mj - 5 * ms + 21)
+              - 0.036 * sin(mj - 2 * ms)
+              + 0.022 * cos(mj - ms)
+              + 0.023 * sin(2 * mj - 3 * ms + 52)
+              - 0.016 * sin(mj - 5 * ms - 69);
+    } else if (planet == SATURN) {
+      longitude =
+          0.812 * sin(2 * mj - 5 * ms - 67.6)
+              - 0.229 * cos(2 * mj - 4 * ms - 2)
+              + 0.119 * sin(mj - 2 * ms - 3)
+              + 0.046 * sin(2 * mj - 6 * ms - 69)
+              + 0.014 * sin(mj - 3 * ms + 32);
+      latitude = -0.020 * cos(2 * mj - 4 * ms - 2) + 0.018 * sin(2 * mj - 6 * ms - 49);
+    } else {
+      longitude =
+          0.040 * sin(ms - 2 * mu + 6) + 0.035 * sin(ms - 3 * mu + 33) - 0.015 * sin(mj - mu + 20);
+    }
+    rotateSpherical(out, longitude, latitude, 0.0);
+  }
+
+  /** Writes the geocentric position of the Moon into {@code out}. */
+  private static void geocentricMoon(double days, double[] out) {
+    double d = days + SCHLYTER_EPOCH_OFFSET_DAYS;
+    double node = 125.1228 - 0.0529538083 * d;
+    double perigee = 318.0634 + 0.1643573223 * d;
+    double meanAnomaly = 115.3654 + 13.0649929509 * d;
+    orbitPosition(
+        60.2666 * EARTH_RADIUS_AU,
+        0.054900,
+        Math.toRadians(5.1454),
+        Math.toRadians(node),
+        Math.toRadians(perigee),
+        Math.toRadians(meanAnomaly),
+        out);
+
+    double sunMeanAnomaly = 356.0470 + 0.9856002585 * d;
+    double sunMeanLongitude = sunMeanAnomaly + 282.9404 + 4.70935e-5 * d;
+    double moonMeanLongitude = meanAnomaly + perigee + node;
+    double elongation = moonMeanLongitude - sunMeanLongitude;
+    double argumentOfLatitude = moonMeanLongitude - node;
+    double m = meanAnomaly;
+    double ms = sunMeanAnomaly;
+    double dd = elongation;
+    double f = argumentOfLatitude;
+
+    double longitude =
+        -1.274 * sin(m - 2 * dd)
+            + 0.658 * sin(2 * dd)
+            - 0.186 * sin(ms)
+            - 0.059 * sin(2 * m - 2 * dd)
+            - 0.057 * sin(m - 2 * dd + ms)
+            + 0.053 * sin(m + 2 * dd)
+            + 0.046 * sin(2 * dd - ms)
+            + 0.041 * sin(m - ms)
+            - 0.035 * sin(dd)
+            - 0.031 * sin(m + ms)
+            - 0.015 * sin(2 * f - 2 * dd)
+            + 0.011 * sin(m - 4 * dd);
+    double latitude =
+        -0.173 * sin(f - 2 * dd)
+            - 0.055 * sin(m - f - 2 * dd)
+            - 0.046 * sin(m + f - 2 * dd)
+            + 0.033 * sin(f + 2 * dd)
+            + 0.017 * sin(2 * m + f);
+    double distance = (-0.58 * cos(m - 2 * dd) - 0.46 * cos(2 * dd)) * EARTH_RADIUS_AU;
+
+    // The lunar elements are referred to the equinox of date, precess them back to J2000.
+    longitude -= 3.82394e-5 * d;
+    rotateSpherical(out, longitude, latitude, distance);
+  }
+
+  /** Writes the position on an orbit, in the frame its angles are given in, into {@code out}. */
+  private static void orbitPosition(
+      double a,
+      double e,
+      double inclination,
+      double node,
+      double argumentOfPeriapsis,
+      double meanAnomaly,
+      double[] out) {
+    double eccentricAnomaly = KeplerOrbit.solveEccentricAnomaly(meanAnomaly, e);
+    double xv = a * (Math.cos(eccentricAnomaly) - e);
+    double yv = a * Math.sqrt(1.0 - e * e) * Math.sin(eccentricAnomaly);
+
+    double cosW = Math.cos(argumentOfPeriapsis);
+    double sinW = Math.sin(argumentOfPeriapsis);
+    double cosN = Math.cos(node);
+    double sinN = Math.sin(node);
+    double cosI = Math.cos(inclination);
+    double sinI = Math.sin(inclination);
+    out[0] = (cosW * cosN - sinW * sinN * cosI) * xv + (-sinW * cosN - cosW * sinN * cosI) * yv;
+    out[1] = (cosW * sinN + sinW * cosN * cosI) * xv + (-sinW * sinN + cosW * cosN * cosI) * yv;
+    out[2] = sinW * sinI * xv + cosW * sinI * yv;
+  }
+
+  /** Adds to the longitude and latitude (degrees) and distance of the position in {@code out}. */
+  private static void rotateSpherical(
+      double[] out, double longitudeDegrees, double latitudeDegrees, double distance) {
+    double r = Math.sqrt(out[0] * out[0] + out[1] * out[1] + out[2] * out[2]);
+    double longitude = Math.atan2(out[1], out[0]) + Math.toRadians(longitudeDegrees);
+    double latitude =
+        Math.atan2(out[2], Math.sqrt(out[0] * out[0] + out[1] * out[1]))
+            + Math.toRadians(latitudeDegrees);
+    r += distance;
+    out[0] = r * Math.cos(latitude) * Math.cos(longitude);
+    out[1] = r * Math.cos(latitude) * Math.sin(longitude);
+    out[2] = r * Math.sin(latitude);
+  }
+
+  private static double sin(double degrees) {
+    return Math.sin(Math.toRadians(degrees));
+  }
+
+  private static double cos(double degrees) {
+    return Math.cos(Math.toRadians(degrees));
+  }
+}